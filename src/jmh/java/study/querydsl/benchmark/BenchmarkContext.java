@@ -0,0 +1,117 @@
+package study.querydsl.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 벤치마크용 애플리케이션 컨텍스트. 임베디드 H2 메모리 DB 를 쓰고 SQL 로그와 p6spy 는 끈다.
+ */
+public final class BenchmarkContext {
+
+    public static final int TEAM_COUNT = 10;
+    public static final int MAX_AGE = 100;
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final int SEQUENCE_GAP = 1_000;
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(String databaseName, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.profiles.active=jmh",
+                "--spring.main.banner-mode=off",
+                "--spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--decorator.datasource.enabled=false",
+                "--logging.level.root=warn",
+                "--logging.level.org.hibernate.SQL=warn",
+                "--logging.level.org.hibernate.type=warn"
+        ));
+        args.addAll(List.of(extraArgs));
+
+        return new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(new String[0]));
+    }
+
+    /**
+     * teamA..teamJ 10개 팀과 rows 명의 회원을 JDBC 배치로 넣는다.
+     * 회원 i 는 username "member{i}", age i % 100, team (i % 10) + 1 이다.
+     */
+    public static void seed(JdbcTemplate jdbcTemplate, int rows) {
+        List<Object[]> teams = new ArrayList<>();
+        for (int i = 0; i < TEAM_COUNT; i++) {
+            teams.add(new Object[]{(long) i + 1, teamName(i)});
+        }
+        jdbcTemplate.batchUpdate("insert into team (id, name) values (?, ?)", teams);
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (long id = 1; id <= rows; id++) {
+            batch.add(new Object[]{id, "member" + id, (int) (id % MAX_AGE), id % TEAM_COUNT + 1});
+            if (batch.size() == BATCH_SIZE) {
+                insertMembers(jdbcTemplate, batch);
+            }
+        }
+        insertMembers(jdbcTemplate, batch);
+
+        // 직접 넣은 id 와 겹치지 않도록 시퀀스를 allocationSize 보다 넉넉히 뒤로 민다.
+        jdbcTemplate.execute("alter sequence team_seq restart with " + (TEAM_COUNT + SEQUENCE_GAP));
+        jdbcTemplate.execute("alter sequence member_seq restart with " + (rows + SEQUENCE_GAP));
+    }
+
+    private static void insertMembers(JdbcTemplate jdbcTemplate, List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", batch);
+        batch.clear();
+    }
+
+    public static String teamName(int index) {
+        return "team" + (char) ('A' + index);
+    }
+
+    /**
+     * 벤치마크 @Param 으로 쓰는 필터 조합을 검색 조건으로 바꾼다.
+     */
+    public static MemberSearchCondition condition(String filter, int rows) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        switch (filter) {
+            case "none":
+                break;
+            case "username":
+                condition.setUsername("member" + rows / 2);
+                break;
+            case "teamName":
+                condition.setTeamName(teamName(0));
+                break;
+            case "ageRange":
+                condition.setAgeGoe(20);
+                condition.setAgeLoe(29);
+                break;
+            case "teamAndAge":
+                condition.setTeamName(teamName(0));
+                condition.setAgeGoe(20);
+                condition.setAgeLoe(29);
+                break;
+            case "all":
+                condition.setUsername("member" + rows / 2);
+                condition.setTeamName(teamName(rows / 2 % TEAM_COUNT));
+                condition.setAgeGoe(0);
+                condition.setAgeLoe(MAX_AGE);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown filter: " + filter);
+        }
+        return condition;
+    }
+}
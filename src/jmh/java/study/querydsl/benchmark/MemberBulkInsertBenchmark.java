@@ -0,0 +1,82 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * 회원 적재 속도. 결과의 ops/s 가 곧 초당 적재 행 수다.
+ * batchSize=0 은 JDBC 배치를 끈 기존 설정이고, persistEach 는 기존처럼 save 를 한 건씩 부르는 방식이다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MemberBulkInsertBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({"0", "100"})
+    public int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager em;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("bulk", "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        em = context.getBean(EntityManager.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void persistEach() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = newTeam();
+            for (int i = 0; i < ROWS; i++) {
+                memberJpaRepository.save(new Member("member" + i, i % 100, team));
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long saveAll() {
+        return transactionTemplate.execute(status -> {
+            Team team = newTeam();
+            return memberJpaRepository.saveAll(IntStream.range(0, ROWS)
+                    .mapToObj(i -> new Member("member" + i, i % 100, team)));
+        });
+    }
+
+    private Team newTeam() {
+        Team team = new Team("team");
+        em.persist(team);
+        return team;
+    }
+}
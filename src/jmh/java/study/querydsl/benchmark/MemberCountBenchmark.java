@@ -0,0 +1,77 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.repository.CountQueries;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀 조인을 남긴 예전 count 쿼리(select count(member) ... left join member.team)와
+ * CountQueries 로 조인을 뺀 count 쿼리를 큰 테이블에서 비교한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class MemberCountBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"none", "ageRange", "teamId"})
+    public String filter;
+
+    private ConfigurableApplicationContext context;
+    private JPAQueryFactory queryFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("count");
+        BenchmarkContext.seed(context.getBean(JdbcTemplate.class), rows);
+        queryFactory = context.getBean(JPAQueryFactory.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Long joined() {
+        return queryFactory.select(member.count())
+                .from(member).leftJoin(member.team, team)
+                .where(filter())
+                .fetchOne();
+    }
+
+    @Benchmark
+    public Long elided() {
+        JPAQuery<?> content = queryFactory.select(member)
+                .from(member).leftJoin(member.team, team)
+                .where(filter());
+        return CountQueries.count(queryFactory, content, member.id).fetchOne();
+    }
+
+    private Predicate filter() {
+        switch (filter) {
+            case "ageRange":
+                return member.age.between(20, 29);
+            case "teamId":
+                return member.team.id.eq(1L);
+            default:
+                return null;
+        }
+    }
+}
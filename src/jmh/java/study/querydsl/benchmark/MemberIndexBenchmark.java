@@ -0,0 +1,94 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 검색 필터용 인덱스가 있을 때와 없을 때를 비교한다. indexed=false 는 인덱스를 지우고
+ * 예전처럼 외래 키 인덱스(team_id)만 남긴 상태다. 결과 캐시는 끈다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberIndexBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    @Param({"username", "teamName", "teamAndAge"})
+    public String filter;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private MemberRepository memberRepository;
+    private MemberSearchCondition condition;
+    private String username;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("index", "--member.search-cache.max-rows=0");
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        if (!indexed) {
+            dropSearchIndexes(jdbcTemplate);
+        }
+        BenchmarkContext.seed(jdbcTemplate, rows);
+        jdbcTemplate.execute("analyze");
+
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        memberRepository = context.getBean(MemberRepository.class);
+        condition = BenchmarkContext.condition(filter, rows);
+        username = "member" + rows / 2;
+    }
+
+    /**
+     * idx_member_team_age 는 외래 키 제약이 쓰고 있어서 바로 지울 수 없다.
+     * 제약을 지우고 인덱스를 지운 뒤 다시 만들면 H2 가 team_id 하나짜리 인덱스를 새로 만든다.
+     */
+    private void dropSearchIndexes(JdbcTemplate jdbcTemplate) {
+        List<String> foreignKeys = jdbcTemplate.queryForList(
+                "select constraint_name from information_schema.constraints"
+                        + " where table_name = 'MEMBER' and constraint_type = 'REFERENTIAL'", String.class);
+        foreignKeys.forEach(fk -> jdbcTemplate.execute("alter table member drop constraint " + fk));
+
+        jdbcTemplate.execute("drop index idx_member_username");
+        jdbcTemplate.execute("drop index idx_member_team_age");
+        jdbcTemplate.execute("drop index idx_team_name");
+        jdbcTemplate.execute("alter table member add constraint fk_member_team foreign key (team_id) references team (id)");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> search() {
+        return memberJpaRepository.search(condition);
+    }
+
+    @Benchmark
+    public List<Member> findByUsername() {
+        return memberRepository.findByUsername(username);
+    }
+}
@@ -0,0 +1,84 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.dto.MemberCursor;
+import study.querydsl.dto.MemberCursorPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+
+/**
+ * 같은 위치의 페이지를 offset 페이징, id 를 먼저 고르는 offset 페이징(deferred), 키셋 페이징으로 조회한다.
+ * depth 는 전체 결과 중 몇 % 지점의 페이지인지를 뜻한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class MemberPagingBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"0", "50", "90"})
+    public int depth;
+
+    private ConfigurableApplicationContext context;
+    private MemberRepository memberRepository;
+    private MemberSearchCondition condition;
+    private PageRequest offsetPage;
+    private MemberCursor cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("paging");
+        BenchmarkContext.seed(context.getBean(JdbcTemplate.class), rows);
+        memberRepository = context.getBean(MemberRepository.class);
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName(BenchmarkContext.teamName(0));
+
+        long matching = rows / BenchmarkContext.TEAM_COUNT;
+        int page = (int) (matching * depth / 100 / PAGE_SIZE);
+        offsetPage = PageRequest.of(page, PAGE_SIZE);
+
+        // offset 페이지 바로 앞 행을 커서로 삼아 같은 위치에서 시작하게 한다.
+        if (page > 0) {
+            MemberTeamDto previous = memberRepository.searchKeyset(condition, null, page * PAGE_SIZE)
+                    .getContent().get(page * PAGE_SIZE - 1);
+            cursor = MemberCursor.of(previous);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> offset() {
+        return memberRepository.searchPageComplex(condition, offsetPage);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> deferred() {
+        return memberRepository.searchPageDeferred(condition, offsetPage);
+    }
+
+    @Benchmark
+    public MemberCursorPage keyset() {
+        return memberRepository.searchKeyset(condition, cursor, PAGE_SIZE);
+    }
+}
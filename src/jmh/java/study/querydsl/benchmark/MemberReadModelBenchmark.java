@@ -0,0 +1,81 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.readmodel.MemberReadModel;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchTemplates;
+
+import java.util.List;
+
+/**
+ * 검색 한 페이지(20건)와 전체 건수를 초당 몇 번 답하는지. readModel 은 MemberReadModel 을 쓰는 searchPageSimple,
+ * jpa 는 같은 일을 MemberSearchTemplates 로 DB 에서 한다. 두 쪽 모두 결과 캐시와 건수 캐시는 거치지 않는다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Threads(4)
+public class MemberReadModelBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"username", "teamName", "ageRange", "teamAndAge", "none"})
+    public String filter;
+
+    private ConfigurableApplicationContext context;
+    private MemberRepository memberRepository;
+    private MemberSearchTemplates memberSearchTemplates;
+    private TransactionTemplate readOnlyTransaction;
+    private MemberSearchCondition condition;
+    private final Pageable pageable = PageRequest.of(0, 20);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("readmodel", "--member.search-cache.max-rows=0", "--member.read-model.enabled=true");
+        BenchmarkContext.seed(context.getBean(JdbcTemplate.class), rows);
+        // 시드는 JDBC 로 넣어서 이벤트가 없으므로 직접 다시 읽는다.
+        context.getBean(MemberReadModel.class).reload();
+        memberRepository = context.getBean(MemberRepository.class);
+        memberSearchTemplates = context.getBean(MemberSearchTemplates.class);
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+        condition = BenchmarkContext.condition(filter, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> readModel() {
+        return memberRepository.searchPageSimple(condition, pageable);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> jpa() {
+        return readOnlyTransaction.execute(status -> {
+            List<MemberTeamDto> content = memberSearchTemplates.fetch(condition, pageable.getOffset(), pageable.getPageSize());
+            return new PageImpl<>(content, pageable, memberSearchTemplates.count(condition));
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 요청당 CPU 비용 비교. 결과가 몇 건 안 되는 데이터로 DB 시간을 줄여서 쿼리 생성 비용이 드러나게 한다.
+ * dynamic 은 매번 Querydsl 로 쿼리를 만드는 searchByBuilder, template 은 모양별 템플릿을 쓰는 search 다.
+ * serializeOnly 는 템플릿이 요청마다 아껴 주는 부분(식 트리 생성 + JPQL 직렬화)만 잰다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MemberSearchTemplateBenchmark {
+
+    @Param({"teamName", "teamAndAge", "all"})
+    public String filter;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private JPAQueryFactory queryFactory;
+    private MemberSearchCondition condition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("template", "--member.search-cache.max-rows=0");
+        BenchmarkContext.seed(context.getBean(JdbcTemplate.class), 100);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        queryFactory = context.getBean(JPAQueryFactory.class);
+        condition = BenchmarkContext.condition(filter, 100);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> dynamic() {
+        return memberJpaRepository.searchByBuilder(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> template() {
+        return memberJpaRepository.search(condition);
+    }
+
+    @Benchmark
+    public String serializeOnly() {
+        return queryFactory.select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                )).from(member).leftJoin(member.team, team)
+                .where(
+                        condition.getUsername() != null ? member.username.eq(condition.getUsername()) : null,
+                        condition.getTeamName() != null ? team.name.eq(condition.getTeamName()) : null,
+                        condition.getAgeGoe() != null ? member.age.goe(condition.getAgeGoe()) : null,
+                        condition.getAgeLoe() != null ? member.age.loe(condition.getAgeLoe()) : null
+                ).toString();
+    }
+}
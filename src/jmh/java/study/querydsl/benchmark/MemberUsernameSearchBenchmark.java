@@ -0,0 +1,69 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.UsernameIndex;
+
+import java.util.List;
+
+/**
+ * username 부분 일치 검색. index 는 UsernameIndex 로 회원 id 를 찾은 뒤 id 로 채우는 search,
+ * like 는 매번 like '%x%' / like 'x%' 를 실행하는 searchByBuilder 다. 결과는 11건이다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class MemberUsernameSearchBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"contains", "prefix"})
+    public String match;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private MemberSearchCondition condition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("username", "--member.search-cache.max-rows=0");
+        BenchmarkContext.seed(context.getBean(JdbcTemplate.class), rows);
+        // 시드는 JDBC 로 넣어서 이벤트가 없으므로 직접 다시 만든다.
+        context.getBean(UsernameIndex.class).rebuild();
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+
+        condition = new MemberSearchCondition();
+        if ("contains".equals(match)) {
+            condition.setUsernameContains("ber12345");
+        } else {
+            condition.setUsernamePrefix("member12345");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> index() {
+        return memberJpaRepository.search(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> like() {
+        return memberJpaRepository.searchByBuilder(condition);
+    }
+}
@@ -0,0 +1,93 @@
+package study.querydsl.benchmark;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * 2차 캐시를 켰을 때와 껐을 때 요청 하나가 쓰는 SQL 수를 비교한다.
+ * 요청 하나 = 팀 이름으로 검색 + 회원 20명을 읽고 지연 로딩으로 각자의 팀 이름을 읽는 것.
+ * 결과의 statements 를 ops 로 나누면 요청당 SQL 수다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class TeamCacheBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({"false", "true"})
+    public boolean l2cache;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager em;
+    private Statistics statistics;
+    private MemberSearchCondition condition;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Statements {
+        public long statements;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = l2cache
+                ? BenchmarkContext.start("teamcache", "--spring.profiles.active=jmh,l2cache",
+                "--spring.jpa.properties.hibernate.generate_statistics=true")
+                : BenchmarkContext.start("teamcache", "--spring.jpa.properties.hibernate.generate_statistics=true");
+        BenchmarkContext.seed(context.getBean(JdbcTemplate.class), ROWS);
+
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        em = context.getBean(EntityManager.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName(BenchmarkContext.teamName(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int searchAndTouchTeams(Statements counter) {
+        long before = statistics.getPrepareStatementCount();
+        Integer touched = transactionTemplate.execute(status -> {
+            memberJpaRepository.search(condition);
+
+            List<Member> members = em.createQuery("select m from Member m where m.id <= :id", Member.class)
+                    .setParameter("id", 20L)
+                    .getResultList();
+            int length = 0;
+            for (Member member : members) {
+                length += member.getTeam().getName().length();
+            }
+            return length;
+        });
+        counter.statements += statistics.getPrepareStatementCount() - before;
+        return touched;
+    }
+}
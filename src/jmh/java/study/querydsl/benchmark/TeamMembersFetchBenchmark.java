@@ -0,0 +1,111 @@
+package study.querydsl.benchmark;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * 팀과 회원을 오가는 지연 로딩 비용. batchSize=1 이 예전처럼 엔티티마다 select 하는 경우다.
+ * teamsWithMembers 는 팀 전체의 회원 수를, membersWithTeam 은 회원 200명의 팀 이름 길이를 더한다.
+ * 결과의 statements 를 ops 로 나누면 요청당 SQL 수다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class TeamMembersFetchBenchmark {
+
+    private static final int ROWS = 1_000;
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private TeamRepository teamRepository;
+    private TransactionTemplate readOnly;
+    private EntityManager em;
+    private Statistics statistics;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Statements {
+        public long statements;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("teammembers",
+                "--spring.jpa.properties.hibernate.default_batch_fetch_size=" + batchSize,
+                "--spring.jpa.properties.hibernate.generate_statistics=true");
+        BenchmarkContext.seed(context.getBean(JdbcTemplate.class), ROWS);
+
+        teamRepository = context.getBean(TeamRepository.class);
+        readOnly = new TransactionTemplate(context.getBean(TransactionTemplate.class).getTransactionManager());
+        readOnly.setReadOnly(true);
+        em = context.getBean(EntityManager.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int teamsWithMembers(Statements counter) {
+        return count(counter, () -> sumMembers(teamRepository.findAll()));
+    }
+
+    @Benchmark
+    public int teamsWithMembersFetchJoin(Statements counter) {
+        return count(counter, () -> sumMembers(teamRepository.findAllWithMembers(PageRequest.of(0, BenchmarkContext.TEAM_COUNT))));
+    }
+
+    @Benchmark
+    public int membersWithTeam(Statements counter) {
+        return count(counter, () -> {
+            List<Member> members = em.createQuery("select m from Member m where m.id <= :id", Member.class)
+                    .setParameter("id", 200L)
+                    .getResultList();
+            int length = 0;
+            for (Member member : members) {
+                length += member.getTeam().getName().length();
+            }
+            return length;
+        });
+    }
+
+    private int sumMembers(List<Team> teams) {
+        int members = 0;
+        for (Team team : teams) {
+            members += team.getMembers().size();
+        }
+        return members;
+    }
+
+    private int count(Statements counter, IntSupplier work) {
+        long before = statistics.getPrepareStatementCount();
+        Integer result = readOnly.execute(status -> work.getAsInt());
+        counter.statements += statistics.getPrepareStatementCount() - before;
+        return result;
+    }
+}
@@ -0,0 +1,69 @@
+package study.querydsl.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 엔드포인트별 p99 기준값(ms). 설정(profile)이 다르게 잰 값과는 비교하지 않는다.
+ */
+public class LatencyBaseline {
+
+    private static final String PROFILE = "profile";
+
+    private final Path file;
+    private final Properties values = new Properties();
+
+    private LatencyBaseline(Path file) {
+        this.file = file;
+    }
+
+    public static LatencyBaseline load(Path file) throws IOException {
+        LatencyBaseline baseline = new LatencyBaseline(file);
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                baseline.values.load(reader);
+            }
+        }
+        return baseline;
+    }
+
+    public boolean comparableWith(String profile) {
+        return profile.equals(values.getProperty(PROFILE));
+    }
+
+    /**
+     * 기준값보다 tolerance 배 넘게 느려진 엔드포인트를 설명과 함께 돌려준다. 기준값이 없는 엔드포인트는 넘어간다.
+     */
+    public List<String> regressions(Map<String, Double> p99Millis, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        p99Millis.forEach((endpoint, p99) -> {
+            String stored = values.getProperty(endpoint + ".p99");
+            if (stored == null) {
+                return;
+            }
+            double limit = Double.parseDouble(stored) * tolerance;
+            if (p99 > limit) {
+                regressions.add(String.format(Locale.ROOT, "%s p99 %.2f ms > %.2f ms (baseline %s ms x %.2f)",
+                        endpoint, p99, limit, stored, tolerance));
+            }
+        });
+        return regressions;
+    }
+
+    public void save(String profile, Map<String, Double> p99Millis) throws IOException {
+        values.clear();
+        values.setProperty(PROFILE, profile);
+        p99Millis.forEach((endpoint, p99) -> values.setProperty(endpoint + ".p99", String.format(Locale.ROOT, "%.2f", p99)));
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            values.store(writer, "p99 latency baseline (ms), written by ./gradlew loadTest -PloadTest.updateBaseline=true");
+        }
+    }
+}
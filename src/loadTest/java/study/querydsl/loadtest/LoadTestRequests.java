@@ -0,0 +1,89 @@
+package study.querydsl.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 요청 모양 섞기. 엔드포인트마다 검색 조건과 페이지 모양을 가중치대로 고른다.
+ * 회원 i 는 username "member{i}", age i % 100, 팀 team{A..J} 이다. (MemberLoadTest.seed)
+ */
+public class LoadTestRequests {
+
+    private static final int TEAM_COUNT = 10;
+
+    private final List<Shape> shapes = new ArrayList<>();
+    private final int totalWeight;
+    private final int rows;
+
+    public LoadTestRequests(int rows) {
+        this.rows = rows;
+
+        // /v1 은 페이징이 없으므로 결과가 작은 조건만 쓴다.
+        add("v1", 10, random -> "/v1/members?username=member" + member(random));
+        add("v1", 5, random -> "/v1/members?teamName=" + team(random) + "&ageGoe=20&ageLoe=21");
+
+        add("v2", 10, random -> "/v2/members?page=0&size=20");
+        add("v2", 10, random -> "/v2/members?teamName=" + team(random) + "&page=" + random.nextInt(10) + "&size=20");
+        add("v2", 5, random -> "/v2/members?ageGoe=20&ageLoe=29&page=" + random.nextInt(100) + "&size=50");
+
+        add("v3", 10, random -> "/v3/members?page=0&size=20");
+        add("v3", 10, random -> "/v3/members?teamName=" + team(random) + "&ageGoe=30&ageLoe=39&page=" + random.nextInt(5) + "&size=20");
+        add("v3", 5, random -> "/v3/members?username=member" + member(random) + "&page=0&size=20");
+
+        this.totalWeight = shapes.stream().mapToInt(shape -> shape.weight).sum();
+    }
+
+    public Request next(Random random) {
+        int pick = random.nextInt(totalWeight);
+        for (Shape shape : shapes) {
+            pick -= shape.weight;
+            if (pick < 0) {
+                return new Request(shape.endpoint, shape.uri.build(random));
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    public List<String> endpoints() {
+        return List.of("v1", "v2", "v3");
+    }
+
+    private void add(String endpoint, int weight, UriBuilder uri) {
+        shapes.add(new Shape(endpoint, weight, uri));
+    }
+
+    private int member(Random random) {
+        return 1 + random.nextInt(rows);
+    }
+
+    private static String team(Random random) {
+        return "team" + (char) ('A' + random.nextInt(TEAM_COUNT));
+    }
+
+    public static class Request {
+        final String endpoint;
+        final String uri;
+
+        Request(String endpoint, String uri) {
+            this.endpoint = endpoint;
+            this.uri = uri;
+        }
+    }
+
+    private interface UriBuilder {
+        String build(Random random);
+    }
+
+    private static class Shape {
+        final String endpoint;
+        final int weight;
+        final UriBuilder uri;
+
+        Shape(String endpoint, int weight, UriBuilder uri) {
+            this.endpoint = endpoint;
+            this.weight = weight;
+            this.uri = uri;
+        }
+    }
+}
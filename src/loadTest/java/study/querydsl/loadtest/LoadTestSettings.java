@@ -0,0 +1,60 @@
+package study.querydsl.loadtest;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 부하 테스트 설정. --rows=100000 처럼 받는다. (gradle 에서는 -PloadTest.rows=100000)
+ */
+@Getter
+@ToString
+public class LoadTestSettings {
+
+    private final int rows;
+    private final int rate;
+    private final int clients;
+    private final Duration warmup;
+    private final Duration duration;
+    private final long seed;
+    private final Path baseline;
+    private final double tolerance;
+    // 실패한 요청(2xx 가 아닌 응답, 예외)의 비율이 이보다 크면 실패한다.
+    private final double maxErrorRate;
+    private final boolean updateBaseline;
+
+    private LoadTestSettings(Map<String, String> values) {
+        this.rows = Integer.parseInt(values.getOrDefault("rows", "100000"));
+        this.rate = Integer.parseInt(values.getOrDefault("rate", "200"));
+        this.clients = Integer.parseInt(values.getOrDefault("clients", "32"));
+        this.warmup = Duration.parse("PT" + values.getOrDefault("warmup", "15s"));
+        this.duration = Duration.parse("PT" + values.getOrDefault("duration", "60s"));
+        this.seed = Long.parseLong(values.getOrDefault("seed", "42"));
+        this.baseline = Path.of(values.getOrDefault("baseline", "src/loadTest/baseline.properties"));
+        this.tolerance = Double.parseDouble(values.getOrDefault("tolerance", "1.2"));
+        this.maxErrorRate = Double.parseDouble(values.getOrDefault("maxErrorRate", "0.001"));
+        this.updateBaseline = Boolean.parseBoolean(values.getOrDefault("updateBaseline", "false"));
+    }
+
+    public static LoadTestSettings parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("expected --key=value but got " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return new LoadTestSettings(values);
+    }
+
+    /**
+     * 기준값은 데이터 크기와 요청 속도가 같을 때만 비교할 수 있다.
+     */
+    public String profile() {
+        return "rows=" + rows + ",rate=" + rate + ",clients=" + clients;
+    }
+}
@@ -0,0 +1,221 @@
+package study.querydsl.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.QuerydslApplication;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 회원 검색 엔드포인트 부하 테스트.
+ *
+ * 앱을 임베디드 H2 메모리 DB 로 띄우고 합성 데이터를 넣은 뒤, 열린 모델로 초당 rate 건을 보낸다.
+ * i 번째 요청은 시작 시각 + i / rate 에 나가기로 정해져 있고 clients 개 스레드가 번갈아 맡는다.
+ * 응답 시간은 실제로 보낸 시각이 아니라 보냈어야 하는 시각부터 잰다. 서버가 밀려서 요청이 늦게 나가면
+ * 그 기다린 시간도 지연에 들어간다. (coordinated omission 보정)
+ *
+ * 워밍업 동안의 요청은 기록하지 않는다. 실패한 요청은 지연 분포에 넣지 않고 따로 센다.
+ * (빨리 돌아오는 4xx/5xx 가 섞이면 p99 가 낮아져서 느려진 것이 가려진다)
+ * 끝나면 엔드포인트별 백분위와 실패 수를 출력하고, 실패 비율이 maxErrorRate 를 넘거나
+ * p99 가 같은 설정으로 잰 기준값보다 tolerance 배 넘게 느리면 종료 코드 1 로 끝난다.
+ */
+public class MemberLoadTest {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int BATCH_SIZE = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.parse(args);
+        System.out.println("load test: " + settings);
+
+        ConfigurableApplicationContext context = start();
+        int exitCode;
+        try {
+            seed(context.getBean(JdbcTemplate.class), settings.getRows());
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+            Result result = run(settings, "http://localhost:" + port);
+            exitCode = report(settings, result);
+        } finally {
+            SpringApplication.exit(context);
+        }
+        System.exit(exitCode);
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(QuerydslApplication.class)
+                .run("--spring.profiles.active=loadtest",
+                        "--spring.main.banner-mode=off",
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--decorator.datasource.enabled=false",
+                        "--sql.budget.mode=off",
+                        "--logging.level.root=warn",
+                        "--logging.level.org.hibernate.SQL=warn",
+                        "--logging.level.org.hibernate.type=warn");
+    }
+
+    /**
+     * teamA..teamJ 10개 팀과 rows 명의 회원을 JDBC 배치로 넣는다. (jmh 의 BenchmarkContext.seed 와 같은 데이터)
+     */
+    private static void seed(JdbcTemplate jdbcTemplate, int rows) {
+        List<Object[]> teams = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            teams.add(new Object[]{(long) i + 1, "team" + (char) ('A' + i)});
+        }
+        jdbcTemplate.batchUpdate("insert into team (id, name) values (?, ?)", teams);
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (long id = 1; id <= rows; id++) {
+            batch.add(new Object[]{id, "member" + id, (int) (id % 100), id % 10 + 1});
+            if (batch.size() == BATCH_SIZE || id == rows) {
+                jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private static Result run(LoadTestSettings settings, String baseUrl) throws InterruptedException {
+        LoadTestRequests requests = new LoadTestRequests(settings.getRows());
+        Result result = new Result();
+        for (String endpoint : requests.endpoints()) {
+            result.latencies.put(endpoint, new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+            result.errors.put(endpoint, new AtomicLong());
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / settings.getRate();
+        long total = (settings.getWarmup().toNanos() + settings.getDuration().toNanos()) / intervalNanos;
+        long warmupRequests = settings.getWarmup().toNanos() / intervalNanos;
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+
+        ExecutorService clients = Executors.newFixedThreadPool(settings.getClients());
+        for (int c = 0; c < settings.getClients(); c++) {
+            int clientIndex = c;
+            clients.execute(() -> {
+                Random random = new Random(settings.getSeed() + clientIndex);
+                for (long i = clientIndex; i < total; i += settings.getClients()) {
+                    long intended = start + i * intervalNanos;
+                    long wait = intended - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+
+                    LoadTestRequests.Request request = requests.next(random);
+                    boolean ok = send(client, baseUrl + request.uri);
+                    long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended);
+
+                    if (i < warmupRequests) {
+                        continue;
+                    }
+                    if (!ok) {
+                        result.errors.get(request.endpoint).incrementAndGet();
+                        continue;
+                    }
+                    result.latencies.get(request.endpoint).recordValue(Math.min(latencyMicros, HIGHEST_TRACKABLE_MICROS));
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(settings.getWarmup().plus(settings.getDuration()).toSeconds() + 120, TimeUnit.SECONDS);
+        return result;
+    }
+
+    private static boolean send(HttpClient client, String url) {
+        try {
+            HttpResponse<Void> response = client.send(
+                    HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(30)).GET().build(),
+                    HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() / 100 == 2;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
+
+    private static int report(LoadTestSettings settings, Result result) throws Exception {
+        Map<String, Double> p99Millis = new LinkedHashMap<>();
+        System.out.printf("%-6s %8s %8s %9s %9s %9s %9s %9s%n", "", "count", "errors", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+        result.latencies.forEach((endpoint, histogram) -> {
+            System.out.printf("%-6s %8d %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n", endpoint, histogram.getTotalCount(),
+                    result.errors.get(endpoint).get(),
+                    millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                    histogram.getMaxValue() / 1000.0);
+            if (histogram.getTotalCount() > 0) {
+                p99Millis.put(endpoint, millis(histogram, 99));
+            }
+        });
+
+        // 실패가 많은 실행의 지연은 믿을 수 없으므로 기준값과 비교하거나 기준값으로 쓰지 않는다.
+        long errors = result.totalErrors();
+        long requests = errors + result.totalRecorded();
+        double errorRate = requests == 0 ? 0 : (double) errors / requests;
+        if (errorRate > settings.getMaxErrorRate()) {
+            System.out.printf("load test: %d of %d requests failed (%.2f%% > %.2f%%)%n",
+                    errors, requests, errorRate * 100, settings.getMaxErrorRate() * 100);
+            return 1;
+        }
+
+        LatencyBaseline baseline = LatencyBaseline.load(settings.getBaseline());
+        if (settings.isUpdateBaseline()) {
+            baseline.save(settings.profile(), p99Millis);
+            System.out.println("load test: baseline written to " + settings.getBaseline());
+            return 0;
+        }
+        if (!baseline.comparableWith(settings.profile())) {
+            System.out.println("load test: no baseline for " + settings.profile() + ", not comparing");
+            return 0;
+        }
+
+        List<String> regressions = baseline.regressions(p99Millis, settings.getTolerance());
+        regressions.forEach(regression -> System.out.println("load test: regression " + regression));
+        return regressions.isEmpty() ? 0 : 1;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * 엔드포인트별로 성공한 요청의 지연 분포와 실패한 요청 수.
+     */
+    private static class Result {
+        final Map<String, Histogram> latencies = new LinkedHashMap<>();
+        final Map<String, AtomicLong> errors = new LinkedHashMap<>();
+
+        long totalErrors() {
+            return errors.values().stream().mapToLong(AtomicLong::get).sum();
+        }
+
+        long totalRecorded() {
+            return latencies.values().stream().mapToLong(Histogram::getTotalCount).sum();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package study.querydsl.cache;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+final class CachePolicy {
+
+    private CachePolicy() {
+    }
+
+    /**
+     * 쓰기 트랜잭션 안에서 읽은 값에는 커밋되지 않은 변경이 섞여 있을 수 있고,
+     * 반대로 캐시된 값에는 이 트랜잭션의 변경이 빠져 있다. 이때는 캐시를 거치지 않는다.
+     */
+    static boolean bypass() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
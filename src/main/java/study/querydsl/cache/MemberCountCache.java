@@ -0,0 +1,66 @@
+package study.querydsl.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.TeamChangedEvent;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * 검색 조건별 전체 건수 캐시. 회원이 하나라도 바뀌면 어떤 조건의 건수가 달라질지 모르므로 전부 비운다.
+ */
+@Component
+public class MemberCountCache {
+
+    private final ExpiringLruCache<MemberSearchCondition, Long> cache;
+
+    public MemberCountCache(@Value("${member.count-cache.max-size:1000}") long maxSize,
+                            @Value("${member.count-cache.ttl:30s}") Duration ttl,
+                            MeterRegistry registry) {
+        this.cache = new ExpiringLruCache<>(maxSize, ttl.toNanos());
+
+        FunctionCounter.builder("member.count.cache.requests", cache, ExpiringLruCache::hitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("member.count.cache.requests", cache, ExpiringLruCache::missCount)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("member.count.cache.evictions", cache, ExpiringLruCache::evictionCount)
+                .register(registry);
+        Gauge.builder("member.count.cache.hit.ratio", cache, ExpiringLruCache::hitRatio)
+                .register(registry);
+        Gauge.builder("member.count.cache.size", cache, ExpiringLruCache::size)
+                .register(registry);
+    }
+
+    public long get(MemberSearchCondition condition, LongSupplier countQuery) {
+        if (CachePolicy.bypass()) {
+            return countQuery.getAsLong();
+        }
+        return cache.get(condition.normalized(), countQuery::getAsLong);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        // 새 팀에는 아직 회원이 없으므로 건수가 바뀌지 않는다.
+        if (event.getType() != TeamChangedEvent.Type.INSERT) {
+            invalidateAll();
+        }
+    }
+}
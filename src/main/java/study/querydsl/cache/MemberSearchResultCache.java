@@ -0,0 +1,78 @@
+package study.querydsl.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.TeamChangedEvent;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 검색 조건별 검색 결과 캐시. 크기는 항목 수가 아니라 담고 있는 행 수로 제한한다.
+ * 한 항목이 max-rows 보다 크면 캐시하지 않는다. 돌려주는 목록은 수정할 수 없다.
+ */
+@Component
+public class MemberSearchResultCache {
+
+    /** MemberTeamDto 한 건이 차지하는 대략의 힙 크기(객체 + 박싱된 값 + 짧은 문자열 두 개) */
+    static final long ESTIMATED_ROW_BYTES = 200;
+
+    private final ExpiringLruCache<MemberSearchCondition, List<MemberTeamDto>> cache;
+
+    public MemberSearchResultCache(@Value("${member.search-cache.max-rows:100000}") long maxRows,
+                                   @Value("${member.search-cache.ttl:10s}") Duration ttl,
+                                   MeterRegistry registry) {
+        // 빈 결과도 자리를 차지하도록 1을 더한다.
+        this.cache = new ExpiringLruCache<>(maxRows, ttl.toNanos(), rows -> rows.size() + 1L);
+
+        FunctionCounter.builder("member.search.cache.requests", cache, ExpiringLruCache::hitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("member.search.cache.requests", cache, ExpiringLruCache::missCount)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("member.search.cache.evictions", cache, ExpiringLruCache::evictionCount)
+                .register(registry);
+        Gauge.builder("member.search.cache.hit.ratio", cache, ExpiringLruCache::hitRatio)
+                .register(registry);
+        Gauge.builder("member.search.cache.size", cache, ExpiringLruCache::size)
+                .register(registry);
+        Gauge.builder("member.search.cache.rows", cache, ExpiringLruCache::weight)
+                .register(registry);
+        Gauge.builder("member.search.cache.memory", cache, c -> c.weight() * ESTIMATED_ROW_BYTES)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public List<MemberTeamDto> get(MemberSearchCondition condition, Supplier<List<MemberTeamDto>> searchQuery) {
+        if (CachePolicy.bypass()) {
+            return searchQuery.get();
+        }
+        return cache.get(condition.normalized(), () -> List.copyOf(searchQuery.get()));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        // 새 팀에는 아직 회원이 없으므로 어떤 결과에도 나타나지 않는다.
+        if (event.getType() != TeamChangedEvent.Type.INSERT) {
+            invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package study.querydsl.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Team;
+import study.querydsl.event.TeamChangedEvent;
+import study.querydsl.repository.TeamRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 팀 이름 -> 팀 id 목록. 이름이 유일하다는 보장이 없어서 목록으로 둔다.
+ * 팀이 하나라도 바뀌면 전부 비운다.
+ */
+@Component
+public class TeamNameCache {
+
+    private final TeamRepository teamRepository;
+    private final ExpiringLruCache<String, List<Long>> cache;
+
+    public TeamNameCache(TeamRepository teamRepository,
+                         @Value("${team.name-cache.max-size:10000}") long maxSize,
+                         @Value("${team.name-cache.ttl:10m}") Duration ttl,
+                         MeterRegistry registry) {
+        this.teamRepository = teamRepository;
+        this.cache = new ExpiringLruCache<>(maxSize, ttl.toNanos());
+
+        FunctionCounter.builder("team.name.cache.requests", cache, ExpiringLruCache::hitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("team.name.cache.requests", cache, ExpiringLruCache::missCount)
+                .tag("result", "miss")
+                .register(registry);
+    }
+
+    public List<Long> findIds(String name) {
+        if (CachePolicy.bypass()) {
+            return load(name);
+        }
+        return cache.get(name, () -> load(name));
+    }
+
+    private List<Long> load(String name) {
+        return teamRepository.findByName(name).stream()
+                .map(Team::getId)
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        cache.invalidateAll();
+    }
+}
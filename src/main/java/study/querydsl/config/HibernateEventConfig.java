@@ -0,0 +1,36 @@
+package study.querydsl.config;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.event.CommitSequenceListener;
+import study.querydsl.event.EntityChangeEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+@Configuration
+@RequiredArgsConstructor
+public class HibernateEventConfig {
+
+    private final EntityManagerFactory emf;
+    private final EntityChangeEventListener entityChangeEventListener;
+    private final CommitSequenceListener commitSequenceListener;
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, entityChangeEventListener);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, entityChangeEventListener);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, entityChangeEventListener);
+
+        registry.appendListeners(EventType.POST_INSERT, commitSequenceListener);
+        registry.appendListeners(EventType.POST_UPDATE, commitSequenceListener);
+        registry.appendListeners(EventType.POST_DELETE, commitSequenceListener);
+    }
+}
@@ -0,0 +1,72 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import study.querydsl.datasource.ReplicaSelector;
+import study.querydsl.datasource.ReplicationProperties;
+import study.querydsl.datasource.ReplicationRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * datasource.replication.enabled=true 일 때 주 DB 와 복제본을 묶은 라우팅 DataSource 를 만든다.
+ * 커넥션 풀은 빈으로 등록하지 않고 여기서 직접 닫는다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "datasource.replication", name = "enabled", havingValue = "true")
+public class ReplicationDataSourceConfig implements DisposableBean {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean(destroyMethod = "close")
+    public ReplicaSelector replicaSelector(ReplicationProperties properties, MeterRegistry registry) {
+        ReplicaSelector selector = new ReplicaSelector(properties.getMaxLag(), properties.getLagCheckInterval(), registry);
+        for (ReplicationProperties.Replica replica : properties.getReplicas()) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName(replica.getName());
+            pool.setJdbcUrl(replica.getUrl());
+            pool.setUsername(replica.getUsername());
+            pool.setPassword(replica.getPassword());
+            pool.setReadOnly(true);
+            pools.add(pool);
+            selector.add(replica.getName(), pool, replica.getLagQuery());
+        }
+        return selector;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, ReplicationProperties properties,
+                                 ReplicaSelector replicaSelector, MeterRegistry registry) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName(ReplicationRoutingDataSource.PRIMARY);
+        pools.add(primary);
+
+        Map<Object, Object> targets = new HashMap<>();
+        for (HikariDataSource pool : pools) {
+            targets.put(pool.getPoolName(), pool);
+        }
+
+        ReplicationRoutingDataSource routing = new ReplicationRoutingDataSource(replicaSelector, properties.getPinAfterWrite(), registry);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Override
+    public void destroy() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
@@ -6,10 +6,12 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.stream.IntStream;
 
 @Profile("local")
 @Component
@@ -24,8 +26,10 @@ public class InitMember {
     }
 
     @Component
+    @RequiredArgsConstructor
     static class InitMemberService{
         @PersistenceContext private EntityManager em;
+        private final MemberJpaRepository memberJpaRepository;
 
         @Transactional
         public void init() {
@@ -34,10 +38,8 @@ public class InitMember {
             em.persist(teamA);
             em.persist(teamB);
 
-            for(int i=0; i<100; i++) {
-                Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-                em.persist(new Member("member" + i, i, selectedTeam));
-            }
+            memberJpaRepository.saveAll(IntStream.range(0, 100)
+                    .mapToObj(i -> new Member("member" + i, i, i % 2 == 0 ? teamA : teamB)));
         }
     }
 }
@@ -1,15 +1,36 @@
 package study.querydsl.controller;
 
+import com.querydsl.core.types.Predicate;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.querydsl.binding.QuerydslPredicate;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import study.querydsl.dto.ImportResult;
+import study.querydsl.dto.MemberCursor;
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TotalAwarePage;
+import study.querydsl.entity.Member;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.service.MemberExportService;
+import study.querydsl.service.MemberImportService;
+import study.querydsl.service.MemberPredicateSearchService;
+import study.querydsl.service.MemberStreamService;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -18,19 +39,93 @@ public class MemberController {
 
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberStreamService memberStreamService;
+    private final MemberExportService memberExportService;
+    private final MemberImportService memberImportService;
+    private final MemberPredicateSearchService memberPredicateSearchService;
+
+    @Value("${member.search.parallel-count.enabled:false}")
+    private boolean parallelCount;
 
     @GetMapping("/v1/members")
     public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
         return memberJpaRepository.search(condition);
     }
 
+    @GetMapping(value = "/v1/members/stream", produces = "application/x-ndjson")
+    public void streamMemberV1(MemberSearchCondition condition, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        memberStreamService.write(condition, response.getOutputStream(), MemberStreamService.Format.NDJSON);
+    }
+
+    @GetMapping(value = "/v1/members/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamMemberV1AsArray(MemberSearchCondition condition, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        memberStreamService.write(condition, response.getOutputStream(), MemberStreamService.Format.JSON_ARRAY);
+    }
+
+    @GetMapping("/v1/members/export")
+    public void exportMembers(@RequestParam(defaultValue = "csv") String format, HttpServletResponse response) throws IOException {
+        MemberExportService.Format exportFormat = "ndjson".equalsIgnoreCase(format)
+                ? MemberExportService.Format.NDJSON
+                : MemberExportService.Format.CSV;
+        response.setContentType(exportFormat == MemberExportService.Format.CSV ? "text/csv" : "application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Content-Disposition",
+                "attachment; filename=\"members." + exportFormat.name().toLowerCase() + "\"");
+        memberExportService.export(response.getOutputStream(), exportFormat);
+    }
+
+    @PostMapping(value = "/v1/members/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ImportResult importMembers(@RequestParam("file") MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return memberImportService.importCsv(in);
+        }
+    }
+
     @GetMapping("/v2/members")
     public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
         return memberRepository.searchPageSimple(condition,pageable);
     }
 
+    @GetMapping("/v2/members/slice")
+    public Slice<MemberTeamDto> searchMemberV2Slice(MemberSearchCondition condition, Pageable pageable) {
+        return memberRepository.searchSlice(condition, pageable);
+    }
+
+    @GetMapping("/v2/members/estimated")
+    public TotalAwarePage<MemberTeamDto> searchMemberV2Estimated(MemberSearchCondition condition, Pageable pageable) {
+        return memberRepository.searchPageEstimated(condition, pageable);
+    }
+
     @GetMapping("/v3/members")
     public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
+        if (parallelCount) {
+            return memberRepository.searchPageParallel(condition, pageable);
+        }
         return memberRepository.searchPageComplex(condition,pageable);
     }
+
+    @GetMapping("/v3/members/deferred")
+    public Page<MemberTeamDto> searchMemberV3Deferred(MemberSearchCondition condition, Pageable pageable) {
+        return memberRepository.searchPageDeferred(condition, pageable);
+    }
+
+    @GetMapping("/v4/members")
+    public MemberCursorPage searchMemberV4(MemberSearchCondition condition,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "20") int size) {
+        MemberCursor after = cursor != null ? MemberCursor.decode(cursor) : null;
+        return memberRepository.searchKeyset(condition, after, Math.min(Math.max(size, 1), 2000));
+    }
+
+    @GetMapping("/v5/members")
+    public MemberCursorPage searchMemberV5(@QuerydslPredicate(root = Member.class, bindings = MemberRepository.class) Predicate predicate,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "20") int size) {
+        MemberCursor after = cursor != null ? MemberCursor.decode(cursor) : null;
+        return memberPredicateSearchService.search(predicate, after, size);
+    }
 }
@@ -0,0 +1,70 @@
+package study.querydsl.datasource;
+
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+
+/**
+ * 쓰기 직후의 읽기를 주 DB 로 고정한다. 복제본이 아직 따라오지 못해 방금 쓴 내용이 안 보이는 것을 막는다.
+ * 같은 스레드에서는 ThreadLocal 로, 웹 요청 사이에서는 쿠키로 고정 기한을 넘긴다.
+ */
+public final class ReadYourWrites {
+
+    static final String COOKIE_NAME = "primary-pin-until";
+
+    private static final ThreadLocal<Long> pinnedUntil = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    public static boolean isPinned() {
+        Long until = pinnedUntil.get();
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    static void pin(Duration window) {
+        long until = System.currentTimeMillis() + window.toMillis();
+        pinnedUntil.set(until);
+
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes) {
+            HttpServletResponse response = ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()).getResponse();
+            if (response != null && !response.isCommitted()) {
+                Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(until));
+                cookie.setPath("/");
+                cookie.setHttpOnly(true);
+                cookie.setMaxAge((int) Math.max(1, window.toSeconds()));
+                response.addCookie(cookie);
+            }
+        }
+    }
+
+    /**
+     * 쿠키 값은 클라이언트가 바꿀 수 있으므로 지금부터 window 안의 기한만 받는다. 그보다 먼 기한은 무시한다.
+     */
+    static void restore(HttpServletRequest request, Duration window) {
+        if (request.getCookies() == null) {
+            return;
+        }
+        long latest = System.currentTimeMillis() + window.toMillis();
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    long until = Long.parseLong(cookie.getValue());
+                    if (until <= latest) {
+                        pinnedUntil.set(until);
+                    }
+                } catch (NumberFormatException ignored) {
+                    // 잘못된 쿠키는 무시하고 복제본을 쓴다.
+                }
+            }
+        }
+    }
+
+    public static void clear() {
+        pinnedUntil.remove();
+    }
+}
@@ -0,0 +1,108 @@
+package study.querydsl.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 복제본의 지연을 주기적으로 확인하고, 허용 범위 안의 복제본을 돌아가며 고른다.
+ * 쓸 수 있는 복제본이 없으면 null 을 돌려주어 주 DB 로 읽게 한다.
+ */
+@Slf4j
+public class ReplicaSelector implements AutoCloseable {
+
+    private static final long UNREACHABLE = -1;
+
+    private final List<Node> nodes = new CopyOnWriteArrayList<>();
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+    private final MeterRegistry registry;
+
+    public ReplicaSelector(Duration maxLag, Duration checkInterval, MeterRegistry registry) {
+        this.maxLagMillis = maxLag.toMillis();
+        this.registry = registry;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::checkLag,
+                checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void add(String name, DataSource dataSource, String lagQuery) {
+        Node node = new Node(name, new JdbcTemplate(dataSource), lagQuery);
+        node.check();
+        nodes.add(node);
+        Gauge.builder("datasource.replica.lag", node, n -> n.lagMillis)
+                .tag("replica", name)
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    public String next() {
+        int size = nodes.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Node node = nodes.get((start + i) % size);
+            if (node.isEligible()) {
+                return node.name;
+            }
+        }
+        return null;
+    }
+
+    void checkLag() {
+        nodes.forEach(Node::check);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private class Node {
+        private final String name;
+        private final JdbcTemplate jdbcTemplate;
+        private final String lagQuery;
+        private volatile long lagMillis = UNREACHABLE;
+
+        Node(String name, JdbcTemplate jdbcTemplate, String lagQuery) {
+            this.name = name;
+            this.jdbcTemplate = jdbcTemplate;
+            this.lagQuery = lagQuery;
+        }
+
+        boolean isEligible() {
+            return lagMillis != UNREACHABLE && lagMillis <= maxLagMillis;
+        }
+
+        void check() {
+            try {
+                if (lagQuery == null) {
+                    jdbcTemplate.queryForObject("select 1", Integer.class);
+                    lagMillis = 0;
+                } else {
+                    Long lag = jdbcTemplate.queryForObject(lagQuery, Long.class);
+                    lagMillis = lag != null ? lag : UNREACHABLE;
+                }
+            } catch (RuntimeException e) {
+                if (lagMillis != UNREACHABLE) {
+                    log.warn("replica {} is unreachable, routing its reads to the primary", name, e);
+                }
+                lagMillis = UNREACHABLE;
+            }
+        }
+    }
+}
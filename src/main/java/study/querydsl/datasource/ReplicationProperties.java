@@ -0,0 +1,44 @@
+package study.querydsl.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 읽기 전용 트랜잭션을 복제본으로 보내는 설정. 주 DB 는 spring.datasource 를 그대로 쓴다.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "datasource.replication")
+public class ReplicationProperties {
+
+    private boolean enabled = false;
+
+    /** 이보다 뒤처진 복제본에는 읽기를 보내지 않는다. */
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    /** 복제본 지연을 확인하는 주기 */
+    private Duration lagCheckInterval = Duration.ofSeconds(5);
+
+    /** 쓰기 트랜잭션이 커밋된 뒤 같은 클라이언트의 읽기를 주 DB 로 보내는 시간 */
+    private Duration pinAfterWrite = Duration.ofSeconds(5);
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Replica {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        /** 지연(ms)을 숫자 하나로 돌려주는 쿼리. 없으면 연결만 확인하고 지연은 0 으로 본다. */
+        private String lagQuery;
+    }
+}
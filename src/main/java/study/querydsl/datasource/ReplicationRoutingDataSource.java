@@ -0,0 +1,59 @@
+package study.querydsl.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * 읽기 전용 트랜잭션은 복제본으로, 나머지는 주 DB 로 보낸다.
+ * 트랜잭션의 readOnly 속성은 커넥션을 얻은 뒤에 정해지므로 LazyConnectionDataSourceProxy 로 감싸서 써야 한다.
+ */
+public class ReplicationRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private final ReplicaSelector replicaSelector;
+    private final Duration pinAfterWrite;
+    private final MeterRegistry registry;
+
+    public ReplicationRoutingDataSource(ReplicaSelector replicaSelector, Duration pinAfterWrite, MeterRegistry registry) {
+        this.replicaSelector = replicaSelector;
+        this.pinAfterWrite = pinAfterWrite;
+        this.registry = registry;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String target = route();
+        registry.counter("datasource.routing", "target", target).increment();
+        return target;
+    }
+
+    private String route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            pinAfterCommit();
+            return PRIMARY;
+        }
+        if (ReadYourWrites.isPinned()) {
+            return PRIMARY;
+        }
+        String replica = replicaSelector.next();
+        return replica != null ? replica : PRIMARY;
+    }
+
+    private void pinAfterCommit() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ReadYourWrites.pin(pinAfterWrite);
+            }
+        });
+    }
+}
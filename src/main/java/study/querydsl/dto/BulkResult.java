@@ -0,0 +1,29 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+/**
+ * 청크 단위 벌크 수정/삭제의 결과.
+ */
+@Getter
+@ToString
+public class BulkResult {
+
+    private final long rows;
+    private final int chunks;
+    private final Duration elapsed;
+
+    public BulkResult(long rows, int chunks, Duration elapsed) {
+        this.rows = rows;
+        this.chunks = chunks;
+        this.elapsed = elapsed;
+    }
+
+    public double getRowsPerSecond() {
+        long millis = Math.max(1, elapsed.toMillis());
+        return rows * 1000.0 / millis;
+    }
+}
@@ -0,0 +1,43 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * CSV 가져오기 결과. 실패한 행은 처음 몇 개만 사유와 함께 담고 나머지는 건수로만 센다.
+ */
+@Getter
+@ToString
+public class ImportResult {
+
+    private final long imported;
+    private final long failed;
+    private final List<RowError> errors;
+    private final Duration elapsed;
+
+    public ImportResult(long imported, long failed, List<RowError> errors, Duration elapsed) {
+        this.imported = imported;
+        this.failed = failed;
+        this.errors = errors;
+        this.elapsed = elapsed;
+    }
+
+    public double getRowsPerSecond() {
+        return imported * 1000.0 / Math.max(1, elapsed.toMillis());
+    }
+
+    @Getter
+    @ToString
+    public static class RowError {
+        private final long line;
+        private final String message;
+
+        public RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class MemberCursorPage {
+
+    private List<MemberTeamDto> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+
+    public MemberCursorPage(List<MemberTeamDto> content, int size, boolean hasNext, String nextCursor) {
+        this.content = content;
+        this.size = size;
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * size + 1 개를 조회한 결과로부터 페이지를 만든다.
+     * 남는 한 건은 다음 페이지가 있는지 판단하는 데에만 쓰고 버린다.
+     */
+    public static MemberCursorPage of(List<MemberTeamDto> fetched, int size) {
+        boolean hasNext = fetched.size() > size;
+        List<MemberTeamDto> content = hasNext ? fetched.subList(0, size) : fetched;
+        String nextCursor = hasNext ? MemberCursor.of(content.get(content.size() - 1)).encode() : null;
+        return new MemberCursorPage(content, size, hasNext, nextCursor);
+    }
+}
@@ -0,0 +1,41 @@
+package study.querydsl.dto;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * 전체 건수가 얼마나 정확한지 함께 내려주는 페이지. 응답 JSON 에 totalAccuracy 로 나간다.
+ */
+public class TotalAwarePage<T> extends PageImpl<T> {
+
+    public enum Accuracy {
+        /** 정확한 건수 */
+        EXACT,
+        /** 통계(히스토그램)로 어림한 건수. 적어도 지금 페이지까지의 행 수보다는 크다. */
+        ESTIMATED,
+        /**
+         * 건수를 제때 구하지 못했다. totalElements 는 지금까지 본 행 수이고,
+         * 페이지가 꽉 찼다면 다음 페이지가 있는 것으로 보이도록 1을 더한다.
+         */
+        UNKNOWN
+    }
+
+    private final Accuracy totalAccuracy;
+
+    public TotalAwarePage(List<T> content, Pageable pageable, long total, Accuracy totalAccuracy) {
+        super(content, pageable, total);
+        this.totalAccuracy = totalAccuracy;
+    }
+
+    public static <T> TotalAwarePage<T> unknownTotal(List<T> content, Pageable pageable) {
+        long seen = pageable.getOffset() + content.size();
+        long total = content.size() == pageable.getPageSize() ? seen + 1 : seen;
+        return new TotalAwarePage<>(content, pageable, total, Accuracy.UNKNOWN);
+    }
+
+    public Accuracy getTotalAccuracy() {
+        return totalAccuracy;
+    }
+}
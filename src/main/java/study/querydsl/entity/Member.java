@@ -7,12 +7,18 @@ import lombok.ToString;
 import javax.persistence.*;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        // team_id 로 먼저 좁히고 age 범위를 같은 인덱스에서 읽는다. 외래 키 인덱스도 겸한다.
+        @Index(name = "idx_member_team_age", columnList = "team_id, age")
+})
 @Getter
 @Setter
 public class Member {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 100)
     @Column(name = "member_id")
     private Long id;
     private String username;
@@ -42,7 +48,7 @@ public class Member {
 
     }
 
-    private void changeTeam(Team team) {
+    public void changeTeam(Team team) {
         this.team = team;
         team.getMembers().add(this);
     }
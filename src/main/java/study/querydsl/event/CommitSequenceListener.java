@@ -0,0 +1,60 @@
+package study.querydsl.event;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * Member, Team 을 flush 한 트랜잭션에 커밋 순번을 매긴다. 하이버네이트의 커밋 직전 처리에서 부르므로
+ * 순번은 DB 커밋보다 먼저 매겨지고, 커밋 이후 이벤트(EntityChangeEventListener)에 실린다.
+ * 등록은 HibernateEventConfig 에서 한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class CommitSequenceListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final EntityChangePublisher publisher;
+    // 트랜잭션마다 한 번만 등록하도록 이번 트랜잭션에 등록한 세션을 기억한다.
+    private final ThreadLocal<EventSource> registered = new ThreadLocal<>();
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        register(event.getEntity(), event.getSession());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        register(event.getEntity(), event.getSession());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        register(event.getEntity(), event.getSession());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void register(Object entity, EventSource session) {
+        if (!(entity instanceof Member || entity instanceof Team) || registered.get() == session) {
+            return;
+        }
+        registered.set(session);
+        session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) s -> publisher.beginCommit());
+        // 롤백되어도 불리므로 여기서 지운다.
+        session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, s) -> registered.remove());
+    }
+}
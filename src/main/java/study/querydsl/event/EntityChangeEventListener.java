@@ -0,0 +1,130 @@
+package study.querydsl.event;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * Member, Team 의 insert/update/delete 가 커밋되면 스프링 이벤트로 바꿔서 발행한다.
+ * 등록은 HibernateEventConfig 에서 한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityChangeEventListener implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final EntityChangePublisher publisher;
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Member) {
+            publisher.publish(new MemberChangedEvent(MemberChangedEvent.Type.INSERT, (Long) event.getId(),
+                    null, memberSnapshot(event.getState(), event.getPersister()), publisher.currentCommit()));
+        } else if (entity instanceof Team) {
+            Team team = (Team) entity;
+            publisher.publish(new TeamChangedEvent(TeamChangedEvent.Type.INSERT, team.getId(), team.getName(),
+                    publisher.currentCommit()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Member) {
+            publisher.publish(new MemberChangedEvent(MemberChangedEvent.Type.UPDATE, (Long) event.getId(),
+                    memberSnapshot(event.getOldState(), event.getPersister()),
+                    memberSnapshot(event.getState(), event.getPersister()), publisher.currentCommit()));
+        } else if (entity instanceof Team) {
+            Team team = (Team) entity;
+            publisher.publish(new TeamChangedEvent(TeamChangedEvent.Type.UPDATE, team.getId(), team.getName(),
+                    publisher.currentCommit()));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Member) {
+            publisher.publish(new MemberChangedEvent(MemberChangedEvent.Type.DELETE, (Long) event.getId(),
+                    memberSnapshot(event.getDeletedState(), event.getPersister()), null, publisher.currentCommit()));
+        } else if (entity instanceof Team) {
+            Team team = (Team) entity;
+            publisher.publish(new TeamChangedEvent(TeamChangedEvent.Type.DELETE, team.getId(), team.getName(),
+                    publisher.currentCommit()));
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    /**
+     * true 인 엔티티의 action 은 하이버네이트가 커밋까지 들고 있는다.
+     * 대량 적재 중인 회원은 BULK 하나로 알리므로 false 를 돌려 action 이 flush 뒤에 풀리게 한다.
+     */
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        Class<?> mappedClass = persister.getMappedClass();
+        if (mappedClass == Member.class) {
+            return !publisher.inBulkMemberChange();
+        }
+        return mappedClass == Team.class;
+    }
+
+    /**
+     * 커밋 이후라 지연 로딩을 일으키면 안 된다. 팀은 프록시에서 식별자만 꺼낸다.
+     * merge 로 들어온 update 처럼 이전 상태를 모르는 경우에는 null 을 돌려준다.
+     */
+    private MemberSnapshot memberSnapshot(Object[] state, EntityPersister persister) {
+        if (state == null) {
+            return null;
+        }
+        String[] propertyNames = persister.getPropertyNames();
+        String username = null;
+        int age = 0;
+        Long teamId = null;
+        for (int i = 0; i < propertyNames.length; i++) {
+            switch (propertyNames[i]) {
+                case "username":
+                    username = (String) state[i];
+                    break;
+                case "age":
+                    age = state[i] != null ? (Integer) state[i] : 0;
+                    break;
+                case "team":
+                    teamId = teamId(state[i]);
+                    break;
+                default:
+            }
+        }
+        return new MemberSnapshot(username, age, teamId);
+    }
+
+    private Long teamId(Object team) {
+        if (team == null) {
+            return null;
+        }
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return ((Team) team).getId();
+    }
+}
@@ -0,0 +1,88 @@
+package study.querydsl.event;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+@Component
+@RequiredArgsConstructor
+public class EntityChangePublisher {
+
+    private final ApplicationEventPublisher publisher;
+    private final ThreadLocal<Boolean> bulkMemberChange = ThreadLocal.withInitial(() -> false);
+    private final AtomicLong commits = new AtomicLong();
+    private final ThreadLocal<Long> currentCommit = ThreadLocal.withInitial(() -> 0L);
+
+    public void publish(Object event) {
+        publisher.publishEvent(event);
+    }
+
+    /**
+     * 트랜잭션 안이라면 커밋된 뒤에, 아니라면 바로 발행한다.
+     * 롤백되면 발행하지 않으므로 캐시가 커밋되지 않은 변경 때문에 비워지는 일은 없다.
+     */
+    public void publishAfterCommit(Object event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(event);
+            }
+        });
+    }
+
+    /**
+     * 대량 적재용. work 안에서 flush 된 회원 변경은 행마다 발행하지 않고, 커밋된 뒤 BULK 하나로 알린다.
+     * 행마다 발행하려면 하이버네이트가 커밋까지 모든 insert action 을 들고 있어야 해서 em.clear() 로도 메모리가 줄지 않는다.
+     * work 는 끝나기 전에 flush 해야 한다. (커밋할 때 flush 되는 변경은 행마다 발행된다)
+     *
+     * 겹쳐 부르면 가장 바깥에서 한 번만 알린다. 바깥이 트랜잭션 밖이면 안쪽에서 청크마다 커밋해도 끝날 때 한 번 알린다.
+     * work 가 실패해도 그 전에 커밋된 것이 있을 수 있으므로 알린다. (트랜잭션 안이면 롤백될 때 발행되지 않는다)
+     */
+    public <T> T bulkMemberChange(Supplier<T> work) {
+        boolean outer = bulkMemberChange.get();
+        bulkMemberChange.set(true);
+        try {
+            return work.get();
+        } finally {
+            bulkMemberChange.set(outer);
+            if (!outer) {
+                publishAfterCommit(MemberChangedEvent.bulk());
+            }
+        }
+    }
+
+    /**
+     * 지금 스레드가 bulkMemberChange 안에 있는지. EntityChangeEventListener 가 회원 변경을 건너뛸지 정할 때 쓴다.
+     */
+    public boolean inBulkMemberChange() {
+        return bulkMemberChange.get();
+    }
+
+    /**
+     * 회원/팀을 바꾼 트랜잭션이 DB 에 커밋하기 직전에 CommitSequenceListener 가 부른다. 커밋에 순번을 매긴다.
+     * 커밋 이후 이벤트는 같은 스레드에서 발행되므로 currentCommit 으로 그 순번을 이벤트에 싣는다.
+     */
+    public void beginCommit() {
+        currentCommit.set(commits.incrementAndGet());
+    }
+
+    public long currentCommit() {
+        return currentCommit.get();
+    }
+
+    /**
+     * 지금까지 매긴 마지막 순번. 어떤 시점에 이 값을 읽었다면, 그보다 큰 순번의 커밋은 그 뒤에 DB 에 반영된 것이다.
+     */
+    public long lastCommit() {
+        return commits.get();
+    }
+}
@@ -0,0 +1,40 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 회원 데이터가 커밋된 뒤 발행된다.
+ * BULK 는 벌크 연산처럼 어떤 행이 바뀌었는지 알 수 없는 경우로, before/after 가 모두 null 이다.
+ * commit 은 EntityChangePublisher 가 커밋 직전에 매긴 순번이고, 모르면 0 이다.
+ */
+@Getter
+@ToString
+public class MemberChangedEvent {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE, BULK
+    }
+
+    private final Type type;
+    private final Long memberId;
+    private final MemberSnapshot before;
+    private final MemberSnapshot after;
+    private final long commit;
+
+    public MemberChangedEvent(Type type, Long memberId, MemberSnapshot before, MemberSnapshot after) {
+        this(type, memberId, before, after, 0);
+    }
+
+    public MemberChangedEvent(Type type, Long memberId, MemberSnapshot before, MemberSnapshot after, long commit) {
+        this.type = type;
+        this.memberId = memberId;
+        this.before = before;
+        this.after = after;
+        this.commit = commit;
+    }
+
+    public static MemberChangedEvent bulk() {
+        return new MemberChangedEvent(Type.BULK, null, null, null);
+    }
+}
@@ -0,0 +1,24 @@
+package study.querydsl.event;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 변경 이벤트 시점의 회원 상태. 커밋 이후에 전달되므로 엔티티 대신 값만 들고 다닌다.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public class MemberSnapshot {
+
+    private final String username;
+    private final int age;
+    private final Long teamId;
+
+    public MemberSnapshot(String username, int age, Long teamId) {
+        this.username = username;
+        this.age = age;
+        this.teamId = teamId;
+    }
+}
@@ -0,0 +1,33 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 팀 데이터가 커밋된 뒤 발행된다.
+ * commit 은 EntityChangePublisher 가 커밋 직전에 매긴 순번이고, 모르면 0 이다.
+ */
+@Getter
+@ToString
+public class TeamChangedEvent {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final Type type;
+    private final Long teamId;
+    private final String name;
+    private final long commit;
+
+    public TeamChangedEvent(Type type, Long teamId, String name) {
+        this(type, teamId, name, 0);
+    }
+
+    public TeamChangedEvent(Type type, Long teamId, String name, long commit) {
+        this.type = type;
+        this.teamId = teamId;
+        this.name = name;
+        this.commit = commit;
+    }
+}
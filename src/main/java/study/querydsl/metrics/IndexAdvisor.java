@@ -0,0 +1,123 @@
+package study.querydsl.metrics;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 개발용 인덱스 점검기. 실행된 select 를 정규화된 모양마다 한 번씩 H2 에서 EXPLAIN 하고,
+ * 실행 계획에 테이블 전체 스캔이 있으면 경고 로그를 남긴다. 모은 결과는 /actuator/indexadvisor 로 본다.
+ *
+ * Querydsl 조건은 SQL 로 바뀐 뒤에 보므로 findByUsername 같은 Spring Data 쿼리도 함께 점검된다.
+ */
+@Slf4j
+@Component
+@Profile("local")
+@Endpoint(id = "indexadvisor")
+public class IndexAdvisor extends SimpleJdbcEventListener {
+
+    // H2 실행 계획의 "/* PUBLIC.MEMBER.tableScan */"
+    private static final Pattern TABLE_SCAN = Pattern.compile("(\\w+)\\.tableScan");
+
+    private final Map<String, Advice> advices = new ConcurrentHashMap<>();
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        String sql = statementInformation.getSql();
+        if (e != null || sql == null || !sql.trim().toLowerCase().startsWith("select")) {
+            return;
+        }
+        String shape = SqlStatementCounter.normalize(sql);
+        Advice advice = advices.get(shape);
+        if (advice == null) {
+            // EXPLAIN 은 JDBC 왕복이라 computeIfAbsent 안에서 돌리면 같은 bin 의 다른 모양까지 막는다.
+            // 밖에서 계산하고, 처음 나온 모양을 동시에 EXPLAIN 했으면 먼저 넣은 쪽을 쓴다.
+            Advice explained = explain(shape, statementInformation.getSqlWithValues(),
+                    statementInformation.getConnectionInformation().getConnection());
+            advice = advices.putIfAbsent(shape, explained);
+            if (advice == null) {
+                advice = explained;
+                if (!advice.getTableScans().isEmpty()) {
+                    log.warn("table scan on {} for: {}\n{}", advice.getTableScans(), shape, advice.getPlan());
+                }
+            }
+        }
+        advice.executions.increment();
+    }
+
+    private Advice explain(String shape, String sqlWithValues, Connection connection) {
+        // p6spy 가 감싸기 전의 커넥션이므로 이 EXPLAIN 은 다시 리스너로 들어오지 않는다.
+        try {
+            if (!"H2".equals(connection.getMetaData().getDatabaseProductName())) {
+                return new Advice(shape, "explain is only supported on H2", Set.of());
+            }
+        } catch (SQLException ex) {
+            return new Advice(shape, "explain failed: " + ex.getMessage(), Set.of());
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet plan = statement.executeQuery("explain " + sqlWithValues)) {
+            StringBuilder text = new StringBuilder();
+            while (plan.next()) {
+                text.append(plan.getString(1));
+            }
+            Set<String> tableScans = new TreeSet<>();
+            Matcher matcher = TABLE_SCAN.matcher(text);
+            while (matcher.find()) {
+                tableScans.add(matcher.group(1));
+            }
+            return new Advice(shape, text.toString(), tableScans);
+        } catch (SQLException ex) {
+            log.debug("could not explain: {}", shape, ex);
+            return new Advice(shape, "explain failed: " + ex.getMessage(), Set.of());
+        }
+    }
+
+    /**
+     * 테이블 스캔이 있는 모양을 많이 실행된 순으로 돌려준다.
+     */
+    @ReadOperation
+    public List<Advice> tableScans() {
+        return advices.values().stream()
+                .filter(advice -> !advice.getTableScans().isEmpty())
+                .sorted(Comparator.comparingLong(Advice::getExecutions).reversed())
+                .collect(Collectors.toList());
+    }
+
+    @Getter
+    public static class Advice {
+        private final String sql;
+        private final String plan;
+        private final Set<String> tableScans;
+        private final LongAdder executions = new LongAdder();
+
+        Advice(String sql, String plan, Set<String> tableScans) {
+            this.sql = sql;
+            this.plan = plan;
+            this.tableScans = tableScans;
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+    }
+}
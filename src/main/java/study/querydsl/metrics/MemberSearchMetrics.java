@@ -0,0 +1,74 @@
+package study.querydsl.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberSearchShape;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * 검색 리포지토리 메서드의 소요 시간과 결과 행 수를 메서드, 조건 모양별로 기록한다.
+ *
+ * member.repository.search        (timer, p50/p99 + 히스토그램)
+ * member.repository.search.rows   (반환 행 수)
+ * member.repository.search.count  (searchPageComplex 의 count 쿼리를 건너뛰었는지)
+ */
+@Component
+public class MemberSearchMetrics {
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> rows = new ConcurrentHashMap<>();
+    private final Map<String, Counter> countQueries = new ConcurrentHashMap<>();
+
+    public MemberSearchMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T> T record(String method, MemberSearchCondition condition, Supplier<T> query, ToIntFunction<T> rowCount) {
+        String shape = MemberSearchShape.name(MemberSearchShape.of(condition));
+        String key = method + ":" + shape;
+
+        long start = System.nanoTime();
+        try {
+            T result = query.get();
+            rows(key, method, shape).record(rowCount.applyAsInt(result));
+            return result;
+        } finally {
+            timer(key, method, shape).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void countQuery(String method, boolean skipped) {
+        countQueries.computeIfAbsent(method + ":" + skipped, key -> Counter.builder("member.repository.search.count")
+                .tag("method", method)
+                .tag("skipped", String.valueOf(skipped))
+                .register(registry))
+                .increment();
+    }
+
+    private Timer timer(String key, String method, String shape) {
+        return timers.computeIfAbsent(key, k -> Timer.builder("member.repository.search")
+                .tag("method", method)
+                .tag("shape", shape)
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private DistributionSummary rows(String key, String method, String shape) {
+        return rows.computeIfAbsent(key, k -> DistributionSummary.builder("member.repository.search.rows")
+                .tag("method", method)
+                .tag("shape", shape)
+                .publishPercentiles(0.5, 0.99)
+                .register(registry));
+    }
+}
@@ -0,0 +1,33 @@
+package study.querydsl.metrics;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 요청(또는 트랜잭션) 하나가 쓸 수 있는 SQL 문 예산.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "sql.budget")
+public class SqlBudgetProperties {
+
+    public enum Mode {
+        /** 검사하지 않는다. */
+        OFF,
+        /** 범위마다 한 번 경고 로그를 남긴다. */
+        LOG,
+        /** 예산을 넘긴 SQL 을 실행한 쪽에 예외를 던진다. 테스트용. */
+        STRICT
+    }
+
+    private Mode mode = Mode.LOG;
+
+    /** 범위 하나에서 실행할 수 있는 전체 SQL 문 수 */
+    private int maxStatements = 100;
+
+    /** 같은 모양의 select 를 반복할 수 있는 횟수. 넘으면 N+1 로 본다. */
+    private int maxRepeats = 10;
+}
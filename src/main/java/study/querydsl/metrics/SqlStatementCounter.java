@@ -0,0 +1,155 @@
+package study.querydsl.metrics;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 현재 스레드에서 실행된 SQL 문을 정규화된 SQL 별로 센다. p6spy 가 JdbcEventListener 빈을 자동으로 등록한다.
+ *
+ * 범위는 MVC 요청마다 SqlStatementMetricsInterceptor 가 연다. 요청 밖에서는 트랜잭션 안에서 처음 SQL 이
+ * 실행될 때 트랜잭션 범위를 열고, 트랜잭션이 끝날 때 닫는다.
+ * 범위마다 SqlBudgetProperties 의 예산을 검사한다. (N+1 탐지)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SqlStatementCounter extends SimpleJdbcEventListener {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("in \\((\\?\\s*,\\s*)+\\?\\)");
+
+    private final SqlBudgetProperties budget;
+    private final ThreadLocal<Scope> current = new ThreadLocal<>();
+
+    public Scope begin(String label) {
+        Scope scope = new Scope(label, current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    public void end(Scope scope) {
+        if (scope.parent != null) {
+            current.set(scope.parent);
+        } else {
+            current.remove();
+        }
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        Scope scope = current.get();
+        if (scope == null) {
+            scope = beginTransactionScope();
+            if (scope == null) {
+                return;
+            }
+        }
+        String sql = normalize(statementInformation.getSql());
+        for (Scope s = scope; s != null; s = s.parent) {
+            s.record(sql);
+            check(s, sql);
+        }
+    }
+
+    private Scope beginTransactionScope() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        String name = TransactionSynchronizationManager.getCurrentTransactionName();
+        Scope scope = begin("transaction " + (name != null ? name : ""));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                end(scope);
+            }
+        });
+        return scope;
+    }
+
+    private void check(Scope scope, String sql) {
+        if (budget.getMode() == SqlBudgetProperties.Mode.OFF || scope.reported) {
+            return;
+        }
+
+        String violation = null;
+        if (scope.statements > budget.getMaxStatements()) {
+            violation = scope.statements + " statements exceed the budget of " + budget.getMaxStatements();
+        } else if (sql.startsWith("select") && scope.bySql.get(sql) > budget.getMaxRepeats()) {
+            violation = "same select repeated " + scope.bySql.get(sql) + " times (possible N+1): " + sql;
+        }
+        if (violation == null) {
+            return;
+        }
+
+        scope.reported = true;
+        String message = "[" + scope.label + "] " + violation + "\n" + scope.summary();
+        if (budget.getMode() == SqlBudgetProperties.Mode.STRICT) {
+            throw new SqlBudgetExceededException(message);
+        }
+        log.warn(message);
+    }
+
+    /**
+     * 값만 다른 SQL 이 같은 것으로 묶이도록 리터럴과 in 목록 길이를 지운다.
+     */
+    static String normalize(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String normalized = WHITESPACE.matcher(sql.trim()).replaceAll(" ").toLowerCase();
+        normalized = STRING_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        return IN_LIST.matcher(normalized).replaceAll("in (?)");
+    }
+
+    public static class Scope {
+        private final String label;
+        private final Scope parent;
+        private final Map<String, Integer> bySql = new HashMap<>();
+        private long statements;
+        private boolean reported;
+
+        Scope(String label, Scope parent) {
+            this.label = label;
+            this.parent = parent;
+        }
+
+        void record(String sql) {
+            statements++;
+            bySql.merge(sql, 1, Integer::sum);
+        }
+
+        public long getStatements() {
+            return statements;
+        }
+
+        public Map<String, Integer> getStatementsBySql() {
+            return bySql;
+        }
+
+        /**
+         * 많이 반복된 순서로 상위 5개
+         */
+        String summary() {
+            return bySql.entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()))
+                    .limit(5)
+                    .map(entry -> "  " + entry.getValue() + "x " + entry.getKey())
+                    .collect(Collectors.joining("\n"));
+        }
+    }
+}
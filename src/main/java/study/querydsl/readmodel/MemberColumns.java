@@ -0,0 +1,252 @@
+package study.querydsl.readmodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * 회원을 열 단위 배열로 들고 있는 읽기 전용 스냅숏. 행 번호 순서가 member_id 순서다.
+ * 팀은 팀 id 대신 작은 정수 코드로 두고(teamIdByCode), username, age, 팀별로 정렬된 행 번호 배열을 따로 둔다.
+ * 한 번 만들면 바꾸지 않는다. 바뀐 행은 MemberReadModel 의 delta 가 가린다.
+ */
+final class MemberColumns {
+
+    static final int NO_TEAM = -1;
+    private static final int PARALLEL_CHUNK = 1 << 14;
+
+    final long[] ids;
+    final String[] usernames;
+    final int[] ages;
+    final int[] teamCodes;
+    final long[] teamIdByCode;
+    final Map<Long, Integer> codeByTeamId;
+
+    // 행 번호를 username 순, age 순으로 늘어놓은 것. 팀별 행 번호는 member_id 순이다.
+    final int[] byUsername;
+    final int[] byAge;
+    final int[][] byTeam;
+
+    private MemberColumns(long[] ids, String[] usernames, int[] ages, int[] teamCodes, long[] teamIdByCode) {
+        this.ids = ids;
+        this.usernames = usernames;
+        this.ages = ages;
+        this.teamCodes = teamCodes;
+        this.teamIdByCode = teamIdByCode;
+        this.codeByTeamId = new HashMap<>(teamIdByCode.length * 2);
+        for (int code = 0; code < teamIdByCode.length; code++) {
+            codeByTeamId.put(teamIdByCode[code], code);
+        }
+
+        Integer[] rows = new Integer[ids.length];
+        Arrays.setAll(rows, row -> row);
+        Arrays.sort(rows, Comparator.comparing((Integer row) -> usernames[row], Comparator.nullsFirst(Comparator.naturalOrder())));
+        this.byUsername = Arrays.stream(rows).mapToInt(Integer::intValue).toArray();
+        Arrays.setAll(rows, row -> row);
+        Arrays.sort(rows, Comparator.comparingInt((Integer row) -> ages[row]));
+        this.byAge = Arrays.stream(rows).mapToInt(Integer::intValue).toArray();
+
+        int[] teamSizes = new int[teamIdByCode.length];
+        for (int code : teamCodes) {
+            if (code != NO_TEAM) {
+                teamSizes[code]++;
+            }
+        }
+        this.byTeam = new int[teamIdByCode.length][];
+        for (int code = 0; code < teamSizes.length; code++) {
+            byTeam[code] = new int[teamSizes[code]];
+        }
+        int[] filled = new int[teamIdByCode.length];
+        for (int row = 0; row < teamCodes.length; row++) {
+            int code = teamCodes[row];
+            if (code != NO_TEAM) {
+                byTeam[code][filled[code]++] = row;
+            }
+        }
+    }
+
+    static MemberColumns empty() {
+        return build(new ArrayList<>());
+    }
+
+    /**
+     * rows 는 member_id 순으로 정렬해서 넘긴다.
+     */
+    static MemberColumns build(List<MemberRow> rows) {
+        int size = rows.size();
+        long[] ids = new long[size];
+        String[] usernames = new String[size];
+        int[] ages = new int[size];
+        int[] teamCodes = new int[size];
+        Map<Long, Integer> codes = new HashMap<>();
+        List<Long> teamIds = new ArrayList<>();
+
+        for (int row = 0; row < size; row++) {
+            MemberRow member = rows.get(row);
+            ids[row] = member.id;
+            usernames[row] = member.username;
+            ages[row] = member.age;
+            if (member.teamId == null) {
+                teamCodes[row] = NO_TEAM;
+            } else {
+                teamCodes[row] = codes.computeIfAbsent(member.teamId, teamId -> {
+                    teamIds.add(teamId);
+                    return teamIds.size() - 1;
+                });
+            }
+        }
+        return new MemberColumns(ids, usernames, ages, teamCodes, teamIds.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    MemberRow row(int row) {
+        int code = teamCodes[row];
+        return new MemberRow(ids[row], usernames[row], ages[row], code == NO_TEAM ? null : teamIdByCode[code]);
+    }
+
+    /**
+     * 조건에 맞는 행 번호를 member_id 순으로 돌려준다. hidden 에 든 id(delta 가 가린 행)는 뺀다.
+     * 가장 적게 읽는 정렬 배열로 후보를 좁힌 뒤 나머지 조건을 검사하고, 후보가 많으면 나눠서 병렬로 검사한다.
+     */
+    int[] filter(MemberFilter filter, Set<Long> hidden, int parallelThreshold) {
+        boolean[] teamCodeMask = null;
+        if (filter.teamIds != null) {
+            teamCodeMask = new boolean[teamIdByCode.length];
+            for (Long teamId : filter.teamIds) {
+                Integer code = codeByTeamId.get(teamId);
+                if (code != null) {
+                    teamCodeMask[code] = true;
+                }
+            }
+        }
+
+        int[] candidates = candidates(filter, teamCodeMask);
+        int count = candidates != null ? candidates.length : size();
+        boolean[] mask = teamCodeMask;
+        if (count < parallelThreshold) {
+            return matching(filter, mask, hidden, candidates, 0, count);
+        }
+
+        int chunks = (count + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+        int[][] parts = IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> matching(filter, mask, hidden, candidates,
+                        chunk * PARALLEL_CHUNK, Math.min(count, (chunk + 1) * PARALLEL_CHUNK)))
+                .toArray(int[][]::new);
+        int total = 0;
+        for (int[] part : parts) {
+            total += part.length;
+        }
+        int[] result = new int[total];
+        int offset = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+
+    /**
+     * 후보 행 번호(member_id 순). null 이면 전체를 본다.
+     */
+    private int[] candidates(MemberFilter filter, boolean[] teamCodeMask) {
+        if (filter.username != null) {
+            int from = lowerBound(byUsername, row -> compare(usernames[row], filter.username) < 0);
+            int to = lowerBound(byUsername, row -> compare(usernames[row], filter.username) <= 0);
+            return sorted(byUsername, from, to);
+        }
+
+        long teamRows = Long.MAX_VALUE;
+        if (teamCodeMask != null) {
+            teamRows = 0;
+            for (int code = 0; code < teamCodeMask.length; code++) {
+                if (teamCodeMask[code]) {
+                    teamRows += byTeam[code].length;
+                }
+            }
+        }
+        int ageFrom = 0;
+        int ageTo = size();
+        if (filter.ageGoe != Integer.MIN_VALUE || filter.ageLoe != Integer.MAX_VALUE) {
+            ageFrom = lowerBound(byAge, row -> ages[row] < filter.ageGoe);
+            ageTo = lowerBound(byAge, row -> ages[row] <= filter.ageLoe);
+        }
+
+        if (teamRows <= ageTo - ageFrom) {
+            int[] rows = new int[(int) teamRows];
+            int offset = 0;
+            for (int code = 0; code < teamCodeMask.length; code++) {
+                if (teamCodeMask[code]) {
+                    System.arraycopy(byTeam[code], 0, rows, offset, byTeam[code].length);
+                    offset += byTeam[code].length;
+                }
+            }
+            Arrays.sort(rows);
+            return rows;
+        }
+        if (ageTo - ageFrom < size()) {
+            return sorted(byAge, ageFrom, Math.max(ageFrom, ageTo));
+        }
+        return null;
+    }
+
+    private int[] matching(MemberFilter filter, boolean[] teamCodeMask, Set<Long> hidden, int[] candidates, int from, int to) {
+        int[] result = new int[to - from];
+        int found = 0;
+        for (int i = from; i < to; i++) {
+            int row = candidates != null ? candidates[i] : i;
+            if (matches(filter, teamCodeMask, row) && (hidden.isEmpty() || !hidden.contains(ids[row]))) {
+                result[found++] = row;
+            }
+        }
+        return found == result.length ? result : Arrays.copyOf(result, found);
+    }
+
+    private boolean matches(MemberFilter filter, boolean[] teamCodeMask, int row) {
+        int age = ages[row];
+        if (age < filter.ageGoe || age > filter.ageLoe) {
+            return false;
+        }
+        if (teamCodeMask != null && (teamCodes[row] == NO_TEAM || !teamCodeMask[teamCodes[row]])) {
+            return false;
+        }
+        return filter.matchesUsername(usernames[row]);
+    }
+
+    private static int[] sorted(int[] index, int from, int to) {
+        int[] rows = Arrays.copyOfRange(index, from, to);
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    private static int lowerBound(int[] index, RowPredicate before) {
+        int low = 0;
+        int high = index.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (before.test(index[mid])) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(String left, String right) {
+        if (left == null) {
+            return right == null ? 0 : -1;
+        }
+        return right == null ? 1 : left.compareTo(right);
+    }
+
+    private interface RowPredicate {
+        boolean test(int row);
+    }
+}
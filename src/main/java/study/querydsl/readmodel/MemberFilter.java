@@ -0,0 +1,46 @@
+package study.querydsl.readmodel;
+
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.Set;
+
+/**
+ * MemberSearchCondition 을 읽기 모델에서 바로 비교할 수 있게 바꾼 것.
+ * 팀명은 팀 id 집합으로, 나이 범위는 없으면 int 의 양 끝으로 둔다.
+ */
+final class MemberFilter {
+
+    final String username;
+    final String usernameContains;
+    final String usernamePrefix;
+    // null 이면 팀 조건이 없다. 비어 있으면 그 이름의 팀이 없다.
+    final Set<Long> teamIds;
+    final int ageGoe;
+    final int ageLoe;
+
+    MemberFilter(MemberSearchCondition condition, Set<Long> teamIds) {
+        MemberSearchCondition normalized = condition.normalized();
+        this.username = normalized.getUsername();
+        this.usernameContains = normalized.getUsernameContains();
+        this.usernamePrefix = normalized.getUsernamePrefix();
+        this.teamIds = teamIds;
+        this.ageGoe = normalized.getAgeGoe() != null ? normalized.getAgeGoe() : Integer.MIN_VALUE;
+        this.ageLoe = normalized.getAgeLoe() != null ? normalized.getAgeLoe() : Integer.MAX_VALUE;
+    }
+
+    boolean matches(MemberRow row) {
+        return row.age >= ageGoe && row.age <= ageLoe
+                && (teamIds == null || row.teamId != null && teamIds.contains(row.teamId))
+                && matchesUsername(row.username);
+    }
+
+    boolean matchesUsername(String value) {
+        if (username == null && usernameContains == null && usernamePrefix == null) {
+            return true;
+        }
+        return value != null
+                && (username == null || username.equals(value))
+                && (usernameContains == null || value.contains(usernameContains))
+                && (usernamePrefix == null || value.startsWith(usernamePrefix));
+    }
+}
@@ -0,0 +1,442 @@
+package study.querydsl.readmodel;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberSnapshot;
+import study.querydsl.event.TeamChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 검색용 메모리 읽기 모델. member.read-model.enabled 를 켰을 때만 쓴다.
+ * 회원은 MemberColumns 에 열 단위 배열로 두고, 그 뒤에 바뀐 행은 delta(id -> 행, 삭제는 null)가 가린다.
+ * delta 가 compact-threshold 를 넘으면 합쳐서 새 MemberColumns 를 만든다.
+ *
+ * 시작할 때 DB 에서 읽고, 그 뒤로는 커밋 이후의 회원/팀 변경 이벤트로 고친다.
+ * 읽는 동안 들어온 이벤트는 모아 두었다가 다시 적용하고, 벌크 변경이 오면 다시 읽는다.
+ * 준비되지 않았거나 쓰기 트랜잭션 안(커밋되지 않은 변경이 없다)이면 빈 Optional 을 돌려주고, 호출한 쪽은 DB 로 찾는다.
+ * 결과는 MemberSearchTemplates 와 같이 member_id 순이고, Pageable 의 Sort 는 보지 않는다.
+ */
+@Slf4j
+@Component
+public class MemberReadModel implements DisposableBean {
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService loader;
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+    private final AtomicBoolean compactScheduled = new AtomicBoolean();
+    private final boolean enabled;
+    private final int compactThreshold;
+    private final int parallelThreshold;
+
+    private final Object reloadLock = new Object();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private MemberColumns columns = MemberColumns.empty();
+    private Map<Long, MemberRow> delta = new HashMap<>();
+    private Map<Long, String> teamNames = new HashMap<>();
+    private boolean ready;
+    private boolean reloading;
+    private boolean bulkWhileReloading;
+    private List<Object> missed = new ArrayList<>();
+
+    private final Counter hits;
+    private final Counter fallbacks;
+
+    public MemberReadModel(JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager,
+                           @Value("${member.read-model.enabled:false}") boolean enabled,
+                           @Value("${member.read-model.compact-threshold:4096}") int compactThreshold,
+                           @Value("${member.read-model.parallel-threshold:65536}") int parallelThreshold,
+                           MeterRegistry registry) {
+        this.queryFactory = queryFactory;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "member-read-model");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.enabled = enabled;
+        this.compactThreshold = compactThreshold;
+        this.parallelThreshold = parallelThreshold;
+
+        this.hits = registry.counter("member.read-model.queries", "result", "hit");
+        this.fallbacks = registry.counter("member.read-model.queries", "result", "fallback");
+        Gauge.builder("member.read-model.rows", this, MemberReadModel::rows).register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        loader.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            scheduleReload();
+        }
+    }
+
+    /**
+     * MemberSearchTemplates.fetch(condition) 와 같은 결과. 읽기 모델을 쓸 수 없으면 빈 Optional 이다.
+     */
+    public Optional<List<MemberTeamDto>> search(MemberSearchCondition condition) {
+        return query(condition, 0, Integer.MAX_VALUE).map(result -> result.content);
+    }
+
+    /**
+     * 한 페이지와 전체 건수. 읽기 모델을 쓸 수 없으면 빈 Optional 이다.
+     */
+    public Optional<Page<MemberTeamDto>> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        return query(condition, offset, limit).map(result -> new PageImpl<>(result.content, pageable, result.total));
+    }
+
+    private Optional<Result> query(MemberSearchCondition condition, long offset, int limit) {
+        if (!enabled || TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            fallbacks.increment();
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                fallbacks.increment();
+                return Optional.empty();
+            }
+            Result result = execute(new MemberFilter(condition, teamIds(condition.normalized().getTeamName())), offset, limit);
+            hits.increment();
+            return Optional.of(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 열에서 거른 행 번호와 delta 에서 거른 행을 member_id 순으로 합치면서 offset 부터 limit 건만 DTO 로 만든다.
+     */
+    private Result execute(MemberFilter filter, long offset, int limit) {
+        int[] rows = columns.filter(filter, delta.keySet(), parallelThreshold);
+        List<MemberRow> changed = new ArrayList<>();
+        for (MemberRow row : delta.values()) {
+            if (row != null && filter.matches(row)) {
+                changed.add(row);
+            }
+        }
+        changed.sort(Comparator.comparingLong(row -> row.id));
+
+        long total = (long) rows.length + changed.size();
+        List<MemberTeamDto> content = new ArrayList<>((int) Math.max(0, Math.min(limit, total - offset)));
+        int i = 0;
+        int j = 0;
+        for (long position = 0; position < total && content.size() < limit; position++) {
+            boolean fromColumns = j >= changed.size() || i < rows.length && columns.ids[rows[i]] < changed.get(j).id;
+            if (position < offset) {
+                if (fromColumns) {
+                    i++;
+                } else {
+                    j++;
+                }
+                continue;
+            }
+            content.add(toDto(fromColumns ? columns.row(rows[i++]) : changed.get(j++)));
+        }
+        return new Result(content, total);
+    }
+
+    private MemberTeamDto toDto(MemberRow row) {
+        return new MemberTeamDto(row.id, row.username, row.age, row.teamId,
+                row.teamId != null ? teamNames.get(row.teamId) : null);
+    }
+
+    private Set<Long> teamIds(String teamName) {
+        if (teamName == null) {
+            return null;
+        }
+        Set<Long> ids = new HashSet<>();
+        teamNames.forEach((id, name) -> {
+            if (teamName.equals(name)) {
+                ids.add(id);
+            }
+        });
+        return ids;
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        boolean compact;
+        lock.writeLock().lock();
+        try {
+            if (event.getType() == MemberChangedEvent.Type.BULK) {
+                if (reloading) {
+                    bulkWhileReloading = true;
+                } else {
+                    ready = false;
+                    scheduleReload();
+                }
+                return;
+            }
+            if (reloading) {
+                missed.add(event);
+            }
+            apply(delta, event);
+            compact = ready && delta.size() > compactThreshold;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (compact) {
+            scheduleCompact();
+        }
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (reloading) {
+                missed.add(event);
+            }
+            apply(teamNames, event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * DB 에서 다시 읽는다. 한 번에 하나만 읽고, 기다린 쪽은 앞의 것이 끝난 뒤 다시 읽는다.
+     */
+    public void reload() {
+        boolean again;
+        synchronized (reloadLock) {
+            lock.writeLock().lock();
+            try {
+                reloading = true;
+                bulkWhileReloading = false;
+                missed = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            long start = System.nanoTime();
+            Loaded loaded;
+            try {
+                loaded = readOnlyTransaction.execute(status -> load());
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    reloading = false;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                Map<Long, MemberRow> replayed = new HashMap<>();
+                for (Object event : missed) {
+                    if (event instanceof MemberChangedEvent) {
+                        apply(replayed, (MemberChangedEvent) event);
+                    } else {
+                        apply(loaded.teamNames, (TeamChangedEvent) event);
+                    }
+                }
+                missed = new ArrayList<>();
+                columns = loaded.columns;
+                delta = replayed;
+                teamNames = loaded.teamNames;
+                reloading = false;
+                again = bulkWhileReloading;
+                ready = !again;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("member read model loaded: {} members in {} ms", loaded.columns.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+        if (again) {
+            scheduleReload();
+        }
+    }
+
+    private Loaded load() {
+        Map<Long, String> names = new HashMap<>();
+        for (Tuple row : queryFactory.select(team.id, team.name).from(team).fetch()) {
+            names.put(row.get(team.id), row.get(team.name));
+        }
+
+        List<MemberRow> rows = new ArrayList<>();
+        for (Tuple row : queryFactory.select(member.id, member.username, member.age, team.id)
+                .from(member)
+                .leftJoin(member.team, team)
+                .orderBy(member.id.asc())
+                .fetch()) {
+            Integer age = row.get(member.age);
+            rows.add(new MemberRow(row.get(member.id), row.get(member.username), age != null ? age : 0, row.get(team.id)));
+        }
+        return new Loaded(MemberColumns.build(rows), names);
+    }
+
+    /**
+     * delta 를 열에 합친다. 합치는 동안 들어온 변경은 delta 에 남는다. (같은 행 객체인 것만 지운다)
+     */
+    private void compact() {
+        MemberColumns base;
+        Map<Long, MemberRow> merged;
+        lock.readLock().lock();
+        try {
+            if (!ready || delta.size() <= compactThreshold) {
+                return;
+            }
+            base = columns;
+            merged = new HashMap<>(delta);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<MemberRow> rows = new ArrayList<>(base.size() + merged.size());
+        for (int row = 0; row < base.size(); row++) {
+            if (!merged.containsKey(base.ids[row])) {
+                rows.add(base.row(row));
+            }
+        }
+        for (MemberRow row : merged.values()) {
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        rows.sort(Comparator.comparingLong(row -> row.id));
+        MemberColumns compacted = MemberColumns.build(rows);
+
+        lock.writeLock().lock();
+        try {
+            if (columns != base) {
+                return;
+            }
+            columns = compacted;
+            merged.forEach((id, row) -> delta.remove(id, row));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void scheduleReload() {
+        if (reloadScheduled.compareAndSet(false, true)) {
+            loader.execute(() -> {
+                reloadScheduled.set(false);
+                try {
+                    reload();
+                } catch (RuntimeException e) {
+                    log.warn("member read model reload failed; searches fall back to SQL", e);
+                }
+            });
+        }
+    }
+
+    private void scheduleCompact() {
+        if (compactScheduled.compareAndSet(false, true)) {
+            loader.execute(() -> {
+                compactScheduled.set(false);
+                compact();
+            });
+        }
+    }
+
+    private static void apply(Map<Long, MemberRow> target, MemberChangedEvent event) {
+        switch (event.getType()) {
+            case INSERT:
+            case UPDATE:
+                MemberSnapshot after = event.getAfter();
+                if (after != null) {
+                    target.put(event.getMemberId(), new MemberRow(event.getMemberId(), after.getUsername(), after.getAge(), after.getTeamId()));
+                }
+                break;
+            case DELETE:
+                target.put(event.getMemberId(), null);
+                break;
+            default:
+        }
+    }
+
+    private static void apply(Map<Long, String> target, TeamChangedEvent event) {
+        if (event.getType() == TeamChangedEvent.Type.DELETE) {
+            target.remove(event.getTeamId());
+        } else {
+            target.put(event.getTeamId(), event.getName());
+        }
+    }
+
+    private double rows() {
+        lock.readLock().lock();
+        try {
+            long rows = columns.size();
+            for (Map.Entry<Long, MemberRow> entry : delta.entrySet()) {
+                boolean inColumns = Arrays.binarySearch(columns.ids, entry.getKey()) >= 0;
+                rows += (entry.getValue() != null ? 1 : 0) - (inColumns ? 1 : 0);
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static class Result {
+        final List<MemberTeamDto> content;
+        final long total;
+
+        Result(List<MemberTeamDto> content, long total) {
+            this.content = content;
+            this.total = total;
+        }
+    }
+
+    private static class Loaded {
+        final MemberColumns columns;
+        final Map<Long, String> teamNames;
+
+        Loaded(MemberColumns columns, Map<Long, String> teamNames) {
+            this.columns = columns;
+            this.teamNames = teamNames;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package study.querydsl.readmodel;
+
+/**
+ * 읽기 모델의 회원 한 행. 바뀌면 새로 만든다. (delta 를 정리할 때 같은 객체인지로 비교한다)
+ */
+final class MemberRow {
+
+    final long id;
+    final String username;
+    final int age;
+    final Long teamId;
+
+    MemberRow(long id, String username, int age, Long teamId) {
+        this.id = id;
+        this.username = username;
+        this.age = age;
+        this.teamId = teamId;
+    }
+}
@@ -0,0 +1,154 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.BulkResult;
+import study.querydsl.entity.Member;
+import study.querydsl.event.EntityChangePublisher;
+import study.querydsl.event.MemberChangedEvent;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 벌크 수정/삭제를 member_id 범위로 잘라 청크마다 짧은 트랜잭션으로 실행한다.
+ * 한 문장으로 전체를 바꿀 때처럼 락을 오래 잡지 않아서 그 사이 검색 요청이 끼어들 수 있다.
+ * 청크마다 커밋하므로 중간에 실패하면 앞 청크의 변경은 남는다.
+ */
+@Slf4j
+@Repository
+public class MemberBulkRepository {
+
+    private final EntityManagerFactory emf;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate chunkTransaction;
+    private final EntityChangePublisher entityChangePublisher;
+    private final int chunkSize;
+    private final Duration chunkPause;
+
+    public MemberBulkRepository(EntityManager em, EntityManagerFactory emf, PlatformTransactionManager transactionManager,
+                                EntityChangePublisher entityChangePublisher,
+                                @Value("${member.bulk.chunk-size:1000}") int chunkSize,
+                                @Value("${member.bulk.chunk-pause:0ms}") Duration chunkPause) {
+        this.emf = emf;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.entityChangePublisher = entityChangePublisher;
+        this.chunkSize = chunkSize;
+        this.chunkPause = chunkPause;
+    }
+
+    /**
+     * condition 에 맞는 회원을 assignments 로 수정한다.
+     * 예) update(member.age.lt(28), update -> update.set(member.username, "비회원"))
+     */
+    public BulkResult update(Predicate condition, Consumer<JPAUpdateClause> assignments) {
+        return execute("update", condition, range -> {
+            JPAUpdateClause update = queryFactory.update(member).where(condition, range);
+            assignments.accept(update);
+            return update.execute();
+        });
+    }
+
+    public BulkResult delete(Predicate condition) {
+        return execute("delete", condition, range -> {
+            JPADeleteClause delete = queryFactory.delete(member).where(condition, range);
+            return delete.execute();
+        });
+    }
+
+    private BulkResult execute(String operation, Predicate condition, Function<Predicate, Long> chunk) {
+        // 호출한 쪽 쓰기 트랜잭션이 잡은 락을 청크 트랜잭션이 기다리게 되므로 막는다.
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            throw new IllegalStateException("chunked bulk " + operation + " runs its own transactions; call it outside a read-write transaction");
+        }
+
+        long start = System.nanoTime();
+        Tuple bounds = chunkTransaction.execute(status -> queryFactory
+                .select(member.id.min(), member.id.max())
+                .from(member)
+                .where(condition)
+                .fetchOne());
+        Long minId = bounds != null ? bounds.get(member.id.min()) : null;
+        Long maxId = bounds != null ? bounds.get(member.id.max()) : null;
+        if (minId == null) {
+            return new BulkResult(0, 0, Duration.ofNanos(System.nanoTime() - start));
+        }
+
+        long rows = 0;
+        int chunks = 0;
+        for (long from = minId; from <= maxId; from += chunkSize) {
+            long chunkFrom = from;
+            long to = Math.min(from + chunkSize - 1, maxId);
+            Long changed = chunkTransaction.execute(status -> {
+                long count = chunk.apply(member.id.between(chunkFrom, to));
+                entityChangePublisher.publishAfterCommit(MemberChangedEvent.bulk());
+                return count;
+            });
+            rows += changed != null ? changed : 0;
+            chunks++;
+            evictManaged(from, to);
+
+            log.debug("member bulk {}: ids {}..{} of {}..{}, {} rows so far", operation, from, to, minId, maxId, rows);
+            pause();
+        }
+
+        BulkResult result = new BulkResult(rows, chunks, Duration.ofNanos(System.nanoTime() - start));
+        log.info("member bulk {}: {} rows in {} chunks, {} ms ({} rows/s)", operation, result.getRows(), result.getChunks(),
+                result.getElapsed().toMillis(), Math.round(result.getRowsPerSecond()));
+        return result;
+    }
+
+    /**
+     * 호출한 쪽 영속성 컨텍스트(예: open-in-view)에 남아 있는 회원 중 방금 처리한 범위의 것은
+     * 더 이상 DB 와 맞지 않으므로 준영속으로 만든다. 다시 조회하면 바뀐 값을 읽는다.
+     */
+    private void evictManaged(long from, long to) {
+        EntityManager callerEm = EntityManagerFactoryUtils.getTransactionalEntityManager(emf);
+        if (callerEm == null) {
+            return;
+        }
+        SessionImplementor session = callerEm.unwrap(SessionImplementor.class);
+        for (Map.Entry<Object, EntityEntry> entry : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+            if (entry.getKey() instanceof Member) {
+                Long id = (Long) entry.getValue().getId();
+                if (id != null && id >= from && id <= to) {
+                    callerEm.detach(entry.getKey());
+                }
+            }
+        }
+    }
+
+    private void pause() {
+        if (chunkPause.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(chunkPause.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted during chunked bulk operation", e);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.cache.TeamNameCache;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * COUNT(*) 없이 검색 결과 건수를 어림한다.
+ * 팀별/나이별 회원 수 히스토그램과 username 의 서로 다른 값 수를 주기적으로 모아 두고,
+ * 조건들이 서로 독립이라고 보고 선택도를 곱한다. 갱신 사이의 변경은 반영되지 않는다.
+ * username 부분 일치 조건은 반영하지 않으므로 그 조건이 있으면 많게 어림한다.
+ *
+ * 히스토그램은 전용 스레드가 읽기 전용 트랜잭션으로 모은다. 만료되면 다시 모으게 해 두고 그동안은 이전 것을 쓴다.
+ * 한 번에 하나만 모으고, 처음 모으는 동안에만 호출한 쪽이 기다린다.
+ * 호출한 쪽 트랜잭션과 상관없이 커밋된 데이터로만 모으므로 쓰기 트랜잭션 안에서도 같은 히스토그램을 쓴다.
+ */
+@Slf4j
+@Component
+public class MemberCountEstimator implements DisposableBean {
+
+    private final JPAQueryFactory queryFactory;
+    private final TeamNameCache teamNameCache;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService refresher;
+    private final long refreshNanos;
+    private final Counter refreshes;
+
+    private volatile Histogram histogram;
+    private final AtomicReference<CompletableFuture<Histogram>> refreshing = new AtomicReference<>();
+
+    public MemberCountEstimator(JPAQueryFactory queryFactory, TeamNameCache teamNameCache,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${member.count-estimate.refresh:5m}") Duration refresh,
+                                MeterRegistry registry) {
+        this.queryFactory = queryFactory;
+        this.teamNameCache = teamNameCache;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.refresher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "member-count-estimate");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refreshNanos = refresh.toNanos();
+        this.refreshes = registry.counter("member.count.estimate.refreshes");
+    }
+
+    @Override
+    public void destroy() {
+        refresher.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        startRefresh();
+    }
+
+    /**
+     * 지금 커밋된 데이터로 다시 모으고 끝날 때까지 기다린다.
+     */
+    public void refresh() {
+        // 호출 전에 시작된 것은 그 뒤의 커밋을 못 봤을 수 있으므로 끝나기를 기다렸다가 새로 모은다.
+        CompletableFuture<Histogram> running = refreshing.get();
+        if (running != null) {
+            running.handle((built, failure) -> null).join();
+        }
+        await(startRefresh());
+    }
+
+    public long estimate(MemberSearchCondition condition) {
+        Histogram current = current();
+        if (current.total == 0) {
+            return 0;
+        }
+
+        double selectivity = 1.0;
+        if (hasText(condition.getUsername())) {
+            selectivity /= Math.max(1, current.distinctUsernames);
+        }
+        if (hasText(condition.getTeamName())) {
+            long rows = 0;
+            for (Long teamId : teamNameCache.findIds(condition.getTeamName())) {
+                rows += current.byTeam.getOrDefault(teamId, 0L);
+            }
+            selectivity *= (double) rows / current.total;
+        }
+        if (condition.getAgeGoe() != null || condition.getAgeLoe() != null) {
+            int from = condition.getAgeGoe() != null ? condition.getAgeGoe() : Integer.MIN_VALUE;
+            int to = condition.getAgeLoe() != null ? condition.getAgeLoe() : Integer.MAX_VALUE;
+            long rows = from > to ? 0 : current.byAge.subMap(from, true, to, true).values().stream()
+                    .mapToLong(Long::longValue)
+                    .sum();
+            selectivity *= (double) rows / current.total;
+        }
+        return Math.round(current.total * selectivity);
+    }
+
+    private Histogram current() {
+        Histogram current = histogram;
+        if (current == null) {
+            return await(startRefresh());
+        }
+        if (System.nanoTime() - current.builtAt >= refreshNanos) {
+            startRefresh();
+        }
+        return current;
+    }
+
+    private CompletableFuture<Histogram> startRefresh() {
+        while (true) {
+            CompletableFuture<Histogram> running = refreshing.get();
+            if (running != null) {
+                return running;
+            }
+            CompletableFuture<Histogram> next = new CompletableFuture<>();
+            if (refreshing.compareAndSet(null, next)) {
+                refresher.execute(() -> {
+                    Histogram built = null;
+                    RuntimeException failure = null;
+                    try {
+                        built = readOnlyTransaction.execute(status -> build());
+                        histogram = built;
+                        refreshes.increment();
+                    } catch (RuntimeException e) {
+                        log.warn("member count histogram refresh failed; keeping the previous one", e);
+                        failure = e;
+                    }
+                    // 기다리던 쪽이 깨어나서 다시 모으게 하면 새로 시작해야 하므로 먼저 비운다.
+                    refreshing.compareAndSet(next, null);
+                    if (failure != null) {
+                        next.completeExceptionally(failure);
+                    } else {
+                        next.complete(built);
+                    }
+                });
+                return next;
+            }
+        }
+    }
+
+    private static Histogram await(CompletableFuture<Histogram> refresh) {
+        try {
+            return refresh.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Histogram build() {
+        Map<Long, Long> byTeam = new HashMap<>();
+        List<Tuple> teams = queryFactory.select(member.team.id, member.count())
+                .from(member)
+                .groupBy(member.team.id)
+                .fetch();
+        long total = 0;
+        for (Tuple row : teams) {
+            long rows = row.get(member.count());
+            byTeam.put(row.get(member.team.id), rows);
+            total += rows;
+        }
+
+        NavigableMap<Integer, Long> byAge = new TreeMap<>();
+        for (Tuple row : queryFactory.select(member.age, member.count())
+                .from(member)
+                .groupBy(member.age)
+                .fetch()) {
+            byAge.put(row.get(member.age), row.get(member.count()));
+        }
+
+        Long distinctUsernames = queryFactory.select(member.username.countDistinct())
+                .from(member)
+                .fetchOne();
+
+        return new Histogram(total, byTeam, byAge, distinctUsernames != null ? distinctUsernames : 0, System.nanoTime());
+    }
+
+    private static class Histogram {
+        final long total;
+        final Map<Long, Long> byTeam;
+        final NavigableMap<Integer, Long> byAge;
+        final long distinctUsernames;
+        final long builtAt;
+
+        Histogram(long total, Map<Long, Long> byTeam, NavigableMap<Integer, Long> byAge, long distinctUsernames, long builtAt) {
+            this.total = total;
+            this.byTeam = byTeam;
+            this.byAge = byAge;
+            this.distinctUsernames = distinctUsernames;
+            this.builtAt = builtAt;
+        }
+    }
+}
@@ -4,35 +4,86 @@ import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
-import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
+import study.querydsl.cache.MemberSearchResultCache;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
+import study.querydsl.event.EntityChangePublisher;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.metrics.MemberSearchMetrics;
 
 import javax.persistence.EntityManager;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.springframework.util.StringUtils.*;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
-@AllArgsConstructor
+@RequiredArgsConstructor
 @Repository
 public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchTemplates memberSearchTemplates;
+    private final MemberSearchResultCache memberSearchResultCache;
+    private final MemberSearchMetrics memberSearchMetrics;
+    private final EntityChangePublisher entityChangePublisher;
+
+    @Value("${member.bulk.flush-size:100}")
+    private int flushSize;
 
 
     public void save(Member member) {
         em.persist(member);
     }
 
+    /**
+     * 대량 적재용. flushSize 건마다 flush 해서 JDBC 배치로 내보내고 영속성 컨텍스트를 비운다.
+     * 호출 전에 영속 상태였던 엔티티도 함께 준영속이 된다.
+     * 회원 변경 이벤트는 행마다 내지 않고 커밋 뒤 BULK 하나만 낸다. (EntityChangePublisher.bulkMemberChange)
+     */
+    @Transactional
+    public long saveAll(Stream<Member> members) {
+        return entityChangePublisher.bulkMemberChange(() -> {
+            long count = 0;
+            Iterator<Member> iterator = members.iterator();
+            while (iterator.hasNext()) {
+                em.persist(iterator.next());
+                if (++count % flushSize == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.flush();
+            em.clear();
+            return count;
+        });
+    }
+
+    @Transactional
+    public long bulkAgePlus(int ageGoe) {
+        long count = queryFactory.update(member)
+                .set(member.age, member.age.add(1))
+                .where(member.age.goe(ageGoe))
+                .execute();
+
+        em.clear();
+        entityChangePublisher.publishAfterCommit(MemberChangedEvent.bulk());
+        return count;
+    }
+
     public Optional<Member> findById(Long id) {
         Member findMember = em.find(Member.class, id);
         return Optional.ofNullable(findMember);
@@ -42,6 +93,7 @@ public class MemberJpaRepository {
         return em.createQuery("select m from Member m", Member.class).getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByUsername(String username) {
         return em.createQuery("select m from Member m where m.username = :username", Member.class)
                 .setParameter("username", username)
@@ -56,13 +108,27 @@ public class MemberJpaRepository {
         return queryFactory.selectFrom(member).where(member.username.eq(username)).fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition) {
+        return memberSearchMetrics.record("MemberJpaRepository.searchByBuilder", condition,
+                () -> fetchByBuilder(condition), List::size);
+    }
+
+    private List<MemberTeamDto> fetchByBuilder(MemberSearchCondition condition) {
 
         BooleanBuilder builder = new BooleanBuilder();
         if(hasText(condition.getUsername())) {
             builder.and(member.username.eq(condition.getUsername()));
         }
 
+        if(hasText(condition.getUsernameContains())) {
+            builder.and(member.username.contains(condition.getUsernameContains()));
+        }
+
+        if(hasText(condition.getUsernamePrefix())) {
+            builder.and(member.username.startsWith(condition.getUsernamePrefix()));
+        }
+
         if(hasText(condition.getTeamName())) {
             builder.and(team.name.eq(condition.getTeamName()));
         }
@@ -86,7 +152,18 @@ public class MemberJpaRepository {
 
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return memberSearchMetrics.record("MemberJpaRepository.search", condition,
+                () -> memberSearchResultCache.get(condition, () -> memberSearchTemplates.fetch(condition)), List::size);
+    }
+
+    /**
+     * search 와 같은 조건이지만 결과를 한 번에 올리지 않고 fetchSize 만큼씩 커서로 읽는다.
+     * DTO 로 바로 프로젝션하므로 영속성 컨텍스트에 엔티티가 쌓이지 않는다.
+     * 반환된 스트림은 트랜잭션 안에서 소비하고 반드시 닫아야 한다.
+     */
+    public Stream<MemberTeamDto> searchStream(MemberSearchCondition condition, int fetchSize) {
         return queryFactory.select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -96,10 +173,14 @@ public class MemberJpaRepository {
                 )).from(member).leftJoin(member.team, team)
                 .where(
                         usernameEq(condition.getUsername()),
+                        usernameContains(condition.getUsernameContains()),
+                        usernamePrefix(condition.getUsernamePrefix()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
-                ).fetch();
+                )
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .stream();
     }
 
     private BooleanExpression ageLoe(Integer ageLoe) {
@@ -117,4 +198,12 @@ public class MemberJpaRepository {
     private BooleanExpression usernameEq(String username) {
         return hasText(username) ? member.username.eq(username) : null;
     }
+
+    private BooleanExpression usernameContains(String part) {
+        return hasText(part) ? member.username.contains(part) : null;
+    }
+
+    private BooleanExpression usernamePrefix(String prefix) {
+        return hasText(prefix) ? member.username.startsWith(prefix) : null;
+    }
 }
@@ -2,15 +2,39 @@ package study.querydsl.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.data.querydsl.binding.QuerydslBinderCustomizer;
+import org.springframework.data.querydsl.binding.QuerydslBindings;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
-public interface MemberRepository extends JpaRepository<Member, Long> , MemberRepositoryCustom, QuerydslPredicateExecutor<Member> {
+public interface MemberRepository extends JpaRepository<Member, Long> , MemberRepositoryCustom, QuerydslPredicateExecutor<Member>,
+        QuerydslBinderCustomizer<QMember> {
 
     // select m from Member m where m.username = :username
+    @Transactional(readOnly = true)
     List<Member> findByUsername(String username);
 
-
-
+    /**
+     * @QuerydslPredicate 로 받을 수 있는 조건. 인덱스로 답할 수 있는 username, team.name 과 age 만 받는다.
+     * age 는 값이 하나면 같음, 둘이면 그 사이로 묶는다. (?age=20&age=30)
+     */
+    @Override
+    default void customize(QuerydslBindings bindings, QMember root) {
+        bindings.including(root.username, root.team.name, root.age);
+        bindings.excludeUnlistedProperties(true);
+        bindings.bind(root.username).first((path, value) -> path.eq(value));
+        bindings.bind(root.team.name).first((path, value) -> path.eq(value));
+        bindings.bind(root.age).all((path, values) -> {
+            List<Integer> ages = new ArrayList<>(values);
+            return Optional.of(ages.size() == 1
+                    ? path.eq(ages.get(0))
+                    : path.between(Collections.min(ages), Collections.max(ages)));
+        });
+    }
 }
@@ -1,9 +1,14 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.types.Predicate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import study.querydsl.dto.MemberCursor;
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TotalAwarePage;
 
 import java.util.List;
 
@@ -11,4 +16,42 @@ public interface MemberRepositoryCustom {
     List<MemberTeamDto> search(MemberSearchCondition condition);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+
+    /**
+     * 다음 페이지가 있는지만 알려 주는 조회. size + 1 건을 읽고 count 쿼리는 실행하지 않는다.
+     */
+    Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable);
+
+    /**
+     * count 쿼리 대신 통계로 어림한 전체 건수를 담는다. 내용만으로 건수를 알 수 있으면 정확한 값을 쓴다.
+     */
+    TotalAwarePage<MemberTeamDto> searchPageEstimated(MemberSearchCondition condition, Pageable pageable);
+
+    /**
+     * searchPageComplex 와 같지만 내용을 id 를 먼저 고른 뒤 채우는 두 단계 쿼리로 읽는다. 깊은 페이지용.
+     * 결과는 member_id 순이다.
+     */
+    Page<MemberTeamDto> searchPageDeferred(MemberSearchCondition condition, Pageable pageable);
+
+    /**
+     * searchPageComplex 와 같지만 count 쿼리를 다른 스레드에서 내용 조회와 동시에 실행한다.
+     * 건수를 제한 시간 안에 구하지 못하면 totalAccuracy 가 UNKNOWN 인 페이지를 돌려준다.
+     */
+    TotalAwarePage<MemberTeamDto> searchPageParallel(MemberSearchCondition condition, Pageable pageable);
+
+    /**
+     * (age, member_id) 순으로 정렬한 키셋 페이징. cursor 가 null 이면 첫 페이지를 조회한다.
+     * offset 을 쓰지 않으므로 몇 번째 페이지든 비용이 같다.
+     */
+    MemberCursorPage searchKeyset(MemberSearchCondition condition, MemberCursor cursor, int size);
+
+    /**
+     * searchKeyset 과 같지만 @QuerydslPredicate 로 만든 조건을 그대로 쓴다.
+     */
+    MemberCursorPage searchKeyset(Predicate predicate, MemberCursor cursor, int size);
+
+    /**
+     * ageGoe 이상인 회원의 나이를 한 살씩 올린다. 영속성 컨텍스트는 비워진다.
+     */
+    long bulkAgePlus(int ageGoe);
 }
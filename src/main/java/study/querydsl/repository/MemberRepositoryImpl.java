@@ -1,22 +1,35 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
-import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.cache.MemberCountCache;
+import study.querydsl.cache.MemberSearchResultCache;
+import study.querydsl.dto.MemberCursor;
+import study.querydsl.dto.MemberCursorPage;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
-import study.querydsl.entity.Member;
+import study.querydsl.dto.TotalAwarePage;
+import study.querydsl.event.EntityChangePublisher;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.metrics.MemberSearchMetrics;
+import study.querydsl.readmodel.MemberReadModel;
 
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
@@ -25,26 +38,41 @@ import static study.querydsl.entity.QTeam.team;
 @Repository
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchTemplates memberSearchTemplates;
+    private final MemberCountCache memberCountCache;
+    private final MemberSearchResultCache memberSearchResultCache;
+    private final EntityChangePublisher entityChangePublisher;
+    private final MemberSearchMetrics memberSearchMetrics;
+    private final ParallelCountQuery parallelCountQuery;
+    private final MemberCountEstimator memberCountEstimator;
+    private final MemberReadModel memberReadModel;
 
-    public MemberRepositoryImpl(EntityManager em) {
+    public MemberRepositoryImpl(EntityManager em, MemberSearchTemplates memberSearchTemplates,
+                                MemberCountCache memberCountCache, MemberSearchResultCache memberSearchResultCache,
+                                EntityChangePublisher entityChangePublisher,
+                                MemberSearchMetrics memberSearchMetrics, ParallelCountQuery parallelCountQuery,
+                                MemberCountEstimator memberCountEstimator, MemberReadModel memberReadModel) {
+        this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.memberSearchTemplates = memberSearchTemplates;
+        this.memberCountCache = memberCountCache;
+        this.memberSearchResultCache = memberSearchResultCache;
+        this.entityChangePublisher = entityChangePublisher;
+        this.memberSearchMetrics = memberSearchMetrics;
+        this.parallelCountQuery = parallelCountQuery;
+        this.memberCountEstimator = memberCountEstimator;
+        this.memberReadModel = memberReadModel;
     }
 
+    @Override
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory.select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                )).from(member).leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                ).fetch();
+        return memberSearchMetrics.record("MemberRepository.search", condition,
+                () -> memberReadModel.search(condition)
+                        .orElseGet(() -> memberSearchResultCache.get(condition, () -> memberSearchTemplates.fetch(condition))),
+                List::size);
     }
 
     private BooleanExpression ageLoe(Integer ageLoe) {
@@ -63,34 +91,141 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
         return hasText(username) ? member.username.eq(username) : null;
     }
 
+    private BooleanExpression usernameContains(String part) {
+        return hasText(part) ? member.username.contains(part) : null;
+    }
+
+    private BooleanExpression usernamePrefix(String prefix) {
+        return hasText(prefix) ? member.username.startsWith(prefix) : null;
+    }
+
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory.select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                )).from(member).leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetchResults();
+        return memberSearchMetrics.record("MemberRepository.searchPageSimple", condition, () -> {
+            Optional<Page<MemberTeamDto>> fromReadModel = memberReadModel.searchPage(condition, pageable);
+            if (fromReadModel.isPresent()) {
+                return fromReadModel.get();
+            }
+            List<MemberTeamDto> content = memberSearchTemplates.fetch(condition, pageable.getOffset(), pageable.getPageSize());
+            long total = memberSearchTemplates.count(condition);
 
-        List<MemberTeamDto> content = results.getResults();
-        long total = results.getTotal();
-
-        return new PageImpl<>(content, pageable, total);
+            return new PageImpl<>(content, pageable, total);
+        }, Page::getNumberOfElements);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        return memberSearchMetrics.record("MemberRepository.searchPageComplex", condition, () -> {
+            Optional<Page<MemberTeamDto>> fromReadModel = memberReadModel.searchPage(condition, pageable);
+            if (fromReadModel.isPresent()) {
+                return fromReadModel.get();
+            }
+            List<MemberTeamDto> content = memberSearchTemplates.fetch(condition, pageable.getOffset(), pageable.getPageSize());
+
+            AtomicBoolean counted = new AtomicBoolean();
+            Page<MemberTeamDto> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+                counted.set(true);
+                return memberCountCache.get(condition, () -> memberSearchTemplates.count(condition));
+            });
+            memberSearchMetrics.countQuery("MemberRepository.searchPageComplex", !counted.get());
+            return page;
+        }, Page::getNumberOfElements);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable) {
+        return memberSearchMetrics.record("MemberRepository.searchSlice", condition, () -> {
+            List<MemberTeamDto> content = memberSearchTemplates.fetch(condition, pageable.getOffset(), pageable.getPageSize() + 1);
+
+            boolean hasNext = content.size() > pageable.getPageSize();
+            return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+        }, Slice::getNumberOfElements);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TotalAwarePage<MemberTeamDto> searchPageEstimated(MemberSearchCondition condition, Pageable pageable) {
+        return memberSearchMetrics.record("MemberRepository.searchPageEstimated", condition, () -> {
+            List<MemberTeamDto> content = memberSearchTemplates.fetch(condition, pageable.getOffset(), pageable.getPageSize());
+
+            OptionalLong knownTotal = totalFromContent(content, pageable);
+            if (knownTotal.isPresent()) {
+                return new TotalAwarePage<>(content, pageable, knownTotal.getAsLong(), TotalAwarePage.Accuracy.EXACT);
+            }
+            // 꽉 찬 페이지이므로 적어도 한 건은 더 있다고 본다.
+            long atLeast = pageable.getOffset() + content.size() + (content.isEmpty() ? 0 : 1);
+            long estimated = Math.max(memberCountEstimator.estimate(condition), atLeast);
+            return new TotalAwarePage<>(content, pageable, estimated, TotalAwarePage.Accuracy.ESTIMATED);
+        }, Page::getNumberOfElements);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<MemberTeamDto> searchPageDeferred(MemberSearchCondition condition, Pageable pageable) {
+        return memberSearchMetrics.record("MemberRepository.searchPageDeferred", condition, () -> {
+            List<MemberTeamDto> content = memberSearchTemplates.fetchDeferred(condition, pageable.getOffset(), pageable.getPageSize());
+
+            AtomicBoolean counted = new AtomicBoolean();
+            Page<MemberTeamDto> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+                counted.set(true);
+                return memberCountCache.get(condition, () -> memberSearchTemplates.count(condition));
+            });
+            memberSearchMetrics.countQuery("MemberRepository.searchPageDeferred", !counted.get());
+            return page;
+        }, Page::getNumberOfElements);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public TotalAwarePage<MemberTeamDto> searchPageParallel(MemberSearchCondition condition, Pageable pageable) {
+        return memberSearchMetrics.record("MemberRepository.searchPageParallel", condition, () -> {
+            ParallelCountQuery.Task total = parallelCountQuery.submit(
+                    () -> memberCountCache.get(condition, () -> memberSearchTemplates.count(condition)));
+            List<MemberTeamDto> content = memberSearchTemplates.fetch(condition, pageable.getOffset(), pageable.getPageSize());
+
+            OptionalLong knownTotal = totalFromContent(content, pageable);
+            memberSearchMetrics.countQuery("MemberRepository.searchPageParallel", knownTotal.isPresent());
+            if (knownTotal.isPresent()) {
+                total.cancel();
+                return new TotalAwarePage<>(content, pageable, knownTotal.getAsLong(), TotalAwarePage.Accuracy.EXACT);
+            }
+
+            OptionalLong counted = total.join();
+            return counted.isPresent()
+                    ? new TotalAwarePage<>(content, pageable, counted.getAsLong(), TotalAwarePage.Accuracy.EXACT)
+                    : TotalAwarePage.unknownTotal(content, pageable);
+        }, Page::getNumberOfElements);
+    }
+
+    /**
+     * PageableExecutionUtils 와 같은 규칙으로, 내용만 보고 전체 건수를 알 수 있으면 돌려준다.
+     * (첫 페이지가 덜 찼거나, 마지막 페이지인 경우)
+     */
+    private OptionalLong totalFromContent(List<MemberTeamDto> content, Pageable pageable) {
+        if (pageable.isUnpaged() || pageable.getOffset() == 0) {
+            if (pageable.isUnpaged() || pageable.getPageSize() > content.size()) {
+                return OptionalLong.of(content.size());
+            }
+            return OptionalLong.empty();
+        }
+        if (content.size() != 0 && pageable.getPageSize() > content.size()) {
+            return OptionalLong.of(pageable.getOffset() + content.size());
+        }
+        return OptionalLong.empty();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MemberCursorPage searchKeyset(MemberSearchCondition condition, MemberCursor cursor, int size) {
+        return memberSearchMetrics.record("MemberRepository.searchKeyset", condition,
+                () -> fetchKeyset(condition, cursor, size), page -> page.getContent().size());
+    }
+
+    private MemberCursorPage fetchKeyset(MemberSearchCondition condition, MemberCursor cursor, int size) {
         List<MemberTeamDto> content = queryFactory.select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -100,21 +235,52 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                 )).from(member).leftJoin(member.team, team)
                 .where(
                         usernameEq(condition.getUsername()),
+                        usernameContains(condition.getUsernameContains()),
+                        usernamePrefix(condition.getUsernamePrefix()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
+                        ageLoe(condition.getAgeLoe()),
+                        afterCursor(cursor)
                 )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
+                .orderBy(member.age.asc(), member.id.asc())
+                .limit(size + 1)
                 .fetch();
 
-        JPAQuery<Member> countQuery = queryFactory.select(member).from(member).leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                );
+        return MemberCursorPage.of(content, size);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MemberCursorPage searchKeyset(Predicate predicate, MemberCursor cursor, int size) {
+        List<MemberTeamDto> content = queryFactory.select(MemberSearchTemplates.PROJECTION)
+                .from(member).leftJoin(member.team, team)
+                .where(predicate, afterCursor(cursor))
+                .orderBy(member.age.asc(), member.id.asc())
+                .limit(size + 1)
+                .fetch();
+
+        return MemberCursorPage.of(content, size);
+    }
+
+    private BooleanExpression afterCursor(MemberCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        // age >= :age 를 따로 두어야 age 인덱스의 범위 조건으로 쓰일 수 있다.
+        return member.age.goe(cursor.getAge())
+                .and(member.age.gt(cursor.getAge()).or(member.id.gt(cursor.getMemberId())));
+    }
+
+    @Override
+    @Transactional
+    public long bulkAgePlus(int ageGoe) {
+        long count = queryFactory.update(member)
+                .set(member.age, member.age.add(1))
+                .where(member.age.goe(ageGoe))
+                .execute();
 
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+        em.clear();
+        entityChangePublisher.publishAfterCommit(MemberChangedEvent.bulk());
+        return count;
     }
 }
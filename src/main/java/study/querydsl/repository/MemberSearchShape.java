@@ -0,0 +1,81 @@
+package study.querydsl.repository;
+
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.util.StringJoiner;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 검색 조건 중 어떤 필터가 쓰였는지를 비트로 나타낸 것. 필터가 6개이므로 모양은 64가지다.
+ */
+public final class MemberSearchShape {
+
+    public static final int USERNAME = 1;
+    public static final int TEAM_NAME = 1 << 1;
+    public static final int AGE_GOE = 1 << 2;
+    public static final int AGE_LOE = 1 << 3;
+    public static final int USERNAME_CONTAINS = 1 << 4;
+    public static final int USERNAME_PREFIX = 1 << 5;
+
+    public static final int COUNT = 1 << 6;
+
+    private MemberSearchShape() {
+    }
+
+    public static int of(MemberSearchCondition condition) {
+        int shape = 0;
+        if (hasText(condition.getUsername())) {
+            shape |= USERNAME;
+        }
+        if (hasText(condition.getTeamName())) {
+            shape |= TEAM_NAME;
+        }
+        if (condition.getAgeGoe() != null) {
+            shape |= AGE_GOE;
+        }
+        if (condition.getAgeLoe() != null) {
+            shape |= AGE_LOE;
+        }
+        if (hasText(condition.getUsernameContains())) {
+            shape |= USERNAME_CONTAINS;
+        }
+        if (hasText(condition.getUsernamePrefix())) {
+            shape |= USERNAME_PREFIX;
+        }
+        return shape;
+    }
+
+    public static boolean has(int shape, int filter) {
+        return (shape & filter) != 0;
+    }
+
+    /**
+     * 메트릭 태그용 이름. 예) "teamName+ageGoe", 필터가 없으면 "none"
+     */
+    public static String name(int shape) {
+        if (shape == 0) {
+            return "none";
+        }
+        StringJoiner joiner = new StringJoiner("+");
+        if (has(shape, USERNAME)) {
+            joiner.add("username");
+        }
+        if (has(shape, TEAM_NAME)) {
+            joiner.add("teamName");
+        }
+        if (has(shape, AGE_GOE)) {
+            joiner.add("ageGoe");
+        }
+        if (has(shape, AGE_LOE)) {
+            joiner.add("ageLoe");
+        }
+        if (has(shape, USERNAME_CONTAINS)) {
+            joiner.add("usernameContains");
+        }
+        if (has(shape, USERNAME_PREFIX)) {
+            joiner.add("usernamePrefix");
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,337 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import study.querydsl.cache.TeamNameCache;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberSearchShape.AGE_GOE;
+import static study.querydsl.repository.MemberSearchShape.AGE_LOE;
+import static study.querydsl.repository.MemberSearchShape.TEAM_NAME;
+import static study.querydsl.repository.MemberSearchShape.USERNAME;
+import static study.querydsl.repository.MemberSearchShape.USERNAME_CONTAINS;
+import static study.querydsl.repository.MemberSearchShape.USERNAME_PREFIX;
+import static study.querydsl.repository.MemberSearchShape.has;
+
+/**
+ * 검색 조건의 모양(MemberSearchShape)마다 Querydsl 로 JPQL 을 한 번만 만들어 두고,
+ * 요청마다 파라미터만 바인딩해서 실행한다.
+ * 같은 JPQL 문자열을 쓰므로 하이버네이트의 쿼리 플랜 캐시도 항상 적중한다.
+ * 팀 이름 조건은 TeamNameCache 로 팀 id 를 찾아서 member.team_id 로 거른다.
+ * usernameContains, usernamePrefix 는 like 로 거르고, UsernameIndex 로 후보 회원 id 를 찾을 수 있으면
+ * member_id in 으로 먼저 좁힌다. 두 경우는 서로 다른 템플릿이다. 색인은 커밋 이후 이벤트로 늦게 고쳐질 수 있으므로
+ * 후보로만 쓰고 like 는 남겨 둔다.
+ */
+@Component
+public class MemberSearchTemplates {
+
+    static final QMemberTeamDto PROJECTION = new QMemberTeamDto(
+            member.id.as("memberId"),
+            member.username,
+            member.age,
+            team.id.as("teamId"),
+            team.name.as("teamName"));
+
+    // 모양별 JPQL 을 만들 때만 쓰는 자리표시 값. 서로 달라야 각자 다른 ?n 이 붙는다.
+    private static final String USERNAME_PLACEHOLDER = "{username}";
+    private static final List<Long> TEAM_IDS_PLACEHOLDER = List.of(Long.MIN_VALUE, Long.MAX_VALUE);
+    private static final int AGE_GOE_PLACEHOLDER = Integer.MIN_VALUE;
+    private static final int AGE_LOE_PLACEHOLDER = Integer.MAX_VALUE;
+    private static final String CONTAINS_PLACEHOLDER = "{usernameContains}";
+    private static final String PREFIX_PLACEHOLDER = "{usernamePrefix}";
+    private static final List<Long> MEMBER_IDS_PLACEHOLDER = List.of(Long.MIN_VALUE + 1, Long.MAX_VALUE - 1);
+    private static final char LIKE_ESCAPE = '!';
+
+    // 모양 비트 위에 얹는 표시. username 부분 일치 조건을 색인에서 찾은 회원 id 로 먼저 좁히는 템플릿이다.
+    private static final int INDEXED = MemberSearchShape.COUNT;
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TeamNameCache teamNameCache;
+    private final UsernameIndex usernameIndex;
+    private final MeterRegistry registry;
+
+    private final Map<Integer, Template> contentTemplates = new ConcurrentHashMap<>();
+    private final Map<Integer, Template> countTemplates = new ConcurrentHashMap<>();
+    private final Map<Integer, Template> idTemplates = new ConcurrentHashMap<>();
+    private volatile Template hydrateTemplate;
+
+    public MemberSearchTemplates(EntityManager em, JPAQueryFactory queryFactory, TeamNameCache teamNameCache,
+                                 UsernameIndex usernameIndex, MeterRegistry registry) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.teamNameCache = teamNameCache;
+        this.usernameIndex = usernameIndex;
+        this.registry = registry;
+
+        Gauge.builder("member.search.templates", contentTemplates, Map::size)
+                .tag("query", "content")
+                .register(registry);
+        Gauge.builder("member.search.templates", countTemplates, Map::size)
+                .tag("query", "count")
+                .register(registry);
+        Gauge.builder("member.search.templates", idTemplates, Map::size)
+                .tag("query", "ids")
+                .register(registry);
+    }
+
+    public List<MemberTeamDto> fetch(MemberSearchCondition condition) {
+        return fetch(condition, 0, -1);
+    }
+
+    public List<MemberTeamDto> fetch(MemberSearchCondition condition, long offset, int limit) {
+        int shape = MemberSearchShape.of(condition);
+        List<Long> teamIds = teamIds(shape, condition);
+        List<Long> memberIds = memberIds(shape, condition);
+        if (teamIds != null && teamIds.isEmpty() || memberIds != null && memberIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (memberIds != null) {
+            shape |= INDEXED;
+        }
+        Template template = contentTemplates.computeIfAbsent(shape,
+                s -> compile(s, "content", contentQuery(s)));
+
+        Query query = template.bind(em, condition, teamIds, memberIds);
+        if (offset > 0) {
+            query.setFirstResult((int) offset);
+        }
+        if (limit >= 0) {
+            query.setMaxResults(limit);
+        }
+
+        List<?> rows = query.getResultList();
+        List<MemberTeamDto> content = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            content.add(PROJECTION.newInstance((Object[]) row));
+        }
+        return content;
+    }
+
+    /**
+     * 두 단계로 페이지를 읽는다. 먼저 조건에 맞는 member_id 만 member_id 순으로 offset/limit 해서 고르고,
+     * 그 id 들로 팀을 조인해 DTO 를 채운다. 건너뛰는 행들은 인덱스 안에서만 읽히므로 깊은 페이지일수록 유리하다.
+     * fetch 와 달리 결과가 member_id 순으로 정해진다.
+     */
+    public List<MemberTeamDto> fetchDeferred(MemberSearchCondition condition, long offset, int limit) {
+        int shape = MemberSearchShape.of(condition);
+        List<Long> teamIds = teamIds(shape, condition);
+        List<Long> memberIds = memberIds(shape, condition);
+        if (teamIds != null && teamIds.isEmpty() || memberIds != null && memberIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (memberIds != null) {
+            shape |= INDEXED;
+        }
+        Template template = idTemplates.computeIfAbsent(shape,
+                s -> compile(s, "ids", idQuery(s)));
+
+        Query query = template.bind(em, condition, teamIds, memberIds);
+        if (offset > 0) {
+            query.setFirstResult((int) offset);
+        }
+        if (limit >= 0) {
+            query.setMaxResults(limit);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Long> ids = query.getResultList();
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return hydrate(ids);
+    }
+
+    /**
+     * id 목록 순서대로 DTO 를 돌려준다. in 절 결과의 순서는 정해져 있지 않아서 다시 맞춘다.
+     */
+    private List<MemberTeamDto> hydrate(List<Long> ids) {
+        List<?> rows = hydrateTemplate().bind(em, null, null, ids).getResultList();
+
+        Map<Long, MemberTeamDto> byId = new HashMap<>(rows.size() * 2);
+        for (Object row : rows) {
+            MemberTeamDto dto = PROJECTION.newInstance((Object[]) row);
+            byId.put(dto.getMemberId(), dto);
+        }
+        List<MemberTeamDto> content = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            MemberTeamDto dto = byId.get(id);
+            // id 를 고른 뒤 지워진 회원은 빠진다.
+            if (dto != null) {
+                content.add(dto);
+            }
+        }
+        return content;
+    }
+
+    public long count(MemberSearchCondition condition) {
+        int shape = MemberSearchShape.of(condition);
+        List<Long> teamIds = teamIds(shape, condition);
+        List<Long> memberIds = memberIds(shape, condition);
+        if (teamIds != null && teamIds.isEmpty() || memberIds != null && memberIds.isEmpty()) {
+            return 0;
+        }
+        if (memberIds != null) {
+            shape |= INDEXED;
+        }
+        Template template = countTemplates.computeIfAbsent(shape,
+                s -> compile(s, "count", countQuery(s)));
+
+        return ((Number) template.bind(em, condition, teamIds, memberIds).getSingleResult()).longValue();
+    }
+
+    /**
+     * 팀 이름 조건이 없으면 null, 있는데 그런 팀이 없으면 빈 목록이다. 빈 목록이면 쿼리를 날리지 않는다.
+     */
+    private List<Long> teamIds(int shape, MemberSearchCondition condition) {
+        return has(shape, TEAM_NAME) ? teamNameCache.findIds(condition.getTeamName()) : null;
+    }
+
+    /**
+     * username 부분 일치 조건이 없거나 색인을 쓸 수 없으면 null, 있으면 맞는 회원 id 목록이다.
+     */
+    private List<Long> memberIds(int shape, MemberSearchCondition condition) {
+        if (!has(shape, USERNAME_CONTAINS) && !has(shape, USERNAME_PREFIX)) {
+            return null;
+        }
+        return usernameIndex.find(condition.getUsernameContains(), condition.getUsernamePrefix())
+                .<List<Long>>map(ArrayList::new)
+                .orElse(null);
+    }
+
+    private JPAQuery<?> contentQuery(int shape) {
+        return queryFactory.select(PROJECTION)
+                .from(member).leftJoin(member.team, team)
+                .where(placeholders(shape));
+    }
+
+    /**
+     * fetchDeferred 가 고른 member_id 로 DTO 를 채운다. 모양이 하나뿐이라 처음 쓸 때 한 번만 만든다.
+     * 회원 id 목록 하나만 받으므로 INDEXED 모양으로 바인딩한다.
+     */
+    private Template hydrateTemplate() {
+        Template template = hydrateTemplate;
+        if (template == null) {
+            synchronized (this) {
+                if (hydrateTemplate == null) {
+                    hydrateTemplate = compile(INDEXED, "memberIds", "hydrate", queryFactory.select(PROJECTION)
+                            .from(member).leftJoin(member.team, team)
+                            .where(member.id.in(MEMBER_IDS_PLACEHOLDER)));
+                }
+                template = hydrateTemplate;
+            }
+        }
+        return template;
+    }
+
+    /**
+     * 팀 조건도 member.team_id 로 거르므로 조인 없이 member 인덱스만으로 답할 수 있다.
+     */
+    private JPAQuery<?> idQuery(int shape) {
+        return queryFactory.select(member.id)
+                .from(member)
+                .where(placeholders(shape))
+                .orderBy(member.id.asc());
+    }
+
+    /**
+     * 내용 쿼리에서 만든다. 팀 조건도 member.team_id 로 거르므로 팀 조인은 빠진다.
+     */
+    private JPAQuery<?> countQuery(int shape) {
+        return CountQueries.count(queryFactory, contentQuery(shape), member.id);
+    }
+
+    /**
+     * 리포지토리의 usernameEq, (usernameContains, usernamePrefix), teamNameEq, ageGoe, ageLoe 와 같은 순서로 둔다.
+     * 팀 id, 회원 id 자리표시는 두 개 이상이어야 한다. 하나면 Querydsl 이 in 을 = 로 바꿔 버린다.
+     * 바인딩할 때도 이 순서대로 ?1, ?2 ... 에 넣는다.
+     */
+    private Predicate[] placeholders(int shape) {
+        boolean indexed = has(shape, INDEXED);
+        return new Predicate[]{
+                has(shape, USERNAME) ? member.username.eq(USERNAME_PLACEHOLDER) : null,
+                indexed ? member.id.in(MEMBER_IDS_PLACEHOLDER) : null,
+                has(shape, USERNAME_CONTAINS) ? member.username.like(CONTAINS_PLACEHOLDER, LIKE_ESCAPE) : null,
+                has(shape, USERNAME_PREFIX) ? member.username.like(PREFIX_PLACEHOLDER, LIKE_ESCAPE) : null,
+                has(shape, TEAM_NAME) ? member.team.id.in(TEAM_IDS_PLACEHOLDER) : null,
+                has(shape, AGE_GOE) ? member.age.goe(AGE_GOE_PLACEHOLDER) : null,
+                has(shape, AGE_LOE) ? member.age.loe(AGE_LOE_PLACEHOLDER) : null
+        };
+    }
+
+    private Template compile(int shape, String kind, JPAQuery<?> query) {
+        return compile(shape, MemberSearchShape.name(shape & ~INDEXED) + (has(shape, INDEXED) ? "+usernameIndex" : ""),
+                kind, query);
+    }
+
+    private Template compile(int shape, String shapeName, String kind, JPAQuery<?> query) {
+        Counter uses = Counter.builder("member.search.template.uses")
+                .tag("shape", shapeName)
+                .tag("query", kind)
+                .register(registry);
+        return new Template(shape, query.toString(), uses);
+    }
+
+    private static class Template {
+        final int shape;
+        final String jpql;
+        final Counter uses;
+
+        Template(int shape, String jpql, Counter uses) {
+            this.shape = shape;
+            this.jpql = jpql;
+            this.uses = uses;
+        }
+
+        Query bind(EntityManager em, MemberSearchCondition condition, List<Long> teamIds, List<Long> memberIds) {
+            uses.increment();
+            Query query = em.createQuery(jpql);
+            int position = 1;
+            if (has(shape, USERNAME)) {
+                query.setParameter(position++, condition.getUsername());
+            }
+            if (has(shape, INDEXED)) {
+                query.setParameter(position++, memberIds);
+            }
+            if (has(shape, USERNAME_CONTAINS)) {
+                query.setParameter(position++, "%" + escapeLike(condition.getUsernameContains()) + "%");
+            }
+            if (has(shape, USERNAME_PREFIX)) {
+                query.setParameter(position++, escapeLike(condition.getUsernamePrefix()) + "%");
+            }
+            if (has(shape, TEAM_NAME)) {
+                query.setParameter(position++, teamIds);
+            }
+            if (has(shape, AGE_GOE)) {
+                query.setParameter(position++, condition.getAgeGoe());
+            }
+            if (has(shape, AGE_LOE)) {
+                query.setParameter(position, condition.getAgeLoe());
+            }
+            return query;
+        }
+
+        private static String escapeLike(String value) {
+            return value.replace("" + LIKE_ESCAPE, "" + LIKE_ESCAPE + LIKE_ESCAPE)
+                    .replace("%", LIKE_ESCAPE + "%")
+                    .replace("_", LIKE_ESCAPE + "_");
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * count 쿼리를 별도 스레드의 읽기 전용 트랜잭션(별도 EntityManager)에서 실행한다.
+ * 전용 스레드 풀은 커넥션 풀을 다 가져가지 않도록 작게 둔다. 풀이 꽉 차 있으면 호출한 스레드에서 그대로 실행하고,
+ * 제한 시간 안에 끝나지 않거나 실패하면 건수를 모르는 것으로 돌려준다.
+ *
+ * 제한 시간이 지나거나 취소되면 실행 중인 JDBC 문을 Session.cancelQuery 로 끊어서 커넥션을 바로 돌려받는다.
+ * (future 를 취소해도 JDBC 문은 멈추지 않는다) 쿼리가 시작되기 직전에 취소되어 끊지 못한 경우에는
+ * 트랜잭션 제한 시간이 JDBC 문의 query timeout 으로 걸려서 그때 멈춘다.
+ */
+@Slf4j
+@Component
+public class ParallelCountQuery implements DisposableBean {
+
+    private final EntityManager em;
+    private final ThreadPoolTaskExecutor executor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Duration timeout;
+
+    private final Counter rejected;
+    private final Counter timedOut;
+    private final Counter failed;
+
+    public ParallelCountQuery(EntityManager em, PlatformTransactionManager transactionManager,
+                              @Value("${member.search.parallel-count.pool-size:4}") int poolSize,
+                              @Value("${member.search.parallel-count.queue-capacity:100}") int queueCapacity,
+                              @Value("${member.search.parallel-count.timeout:2s}") Duration timeout,
+                              MeterRegistry registry) {
+        this.em = em;
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(poolSize);
+        this.executor.setMaxPoolSize(poolSize);
+        this.executor.setQueueCapacity(queueCapacity);
+        this.executor.setThreadNamePrefix("count-query-");
+        this.executor.initialize();
+        this.timeout = timeout;
+
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setTimeout((int) Math.max(1, (timeout.toMillis() + 999) / 1000));
+
+        this.rejected = registry.counter("member.search.parallel.count", "result", "rejected");
+        this.timedOut = registry.counter("member.search.parallel.count", "result", "timeout");
+        this.failed = registry.counter("member.search.parallel.count", "result", "failed");
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    public Task submit(LongSupplier countQuery) {
+        Task task = new Task(countQuery);
+        // 다른 스레드에서는 호출한 쪽 쓰기 트랜잭션의 커밋되지 않은 변경이 보이지 않는다.
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return task;
+        }
+        try {
+            task.future = CompletableFuture.supplyAsync(
+                    () -> readOnlyTransaction.execute(status -> task.runInTransaction()), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+        }
+        return task;
+    }
+
+    public class Task {
+        private final LongSupplier countQuery;
+        private final AtomicReference<Session> running = new AtomicReference<>();
+        private volatile CompletableFuture<Long> future;
+        private volatile boolean cancelled;
+
+        private Task(LongSupplier countQuery) {
+            this.countQuery = countQuery;
+        }
+
+        /**
+         * 전용 스레드의 트랜잭션 안에서 실행된다. 취소할 수 있도록 이 트랜잭션의 세션을 드러내 둔다.
+         */
+        private long runInTransaction() {
+            running.set(em.unwrap(Session.class));
+            try {
+                if (cancelled) {
+                    throw new CancellationException("count query cancelled before it started");
+                }
+                return countQuery.getAsLong();
+            } finally {
+                running.set(null);
+            }
+        }
+
+        public OptionalLong join() {
+            if (future == null) {
+                return OptionalLong.of(countQuery.getAsLong());
+            }
+            try {
+                return OptionalLong.of(future.get(timeout.toMillis(), TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                timedOut.increment();
+                cancel();
+                return OptionalLong.empty();
+            } catch (ExecutionException e) {
+                failed.increment();
+                return OptionalLong.empty();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                return OptionalLong.empty();
+            }
+        }
+
+        /**
+         * 건수가 필요 없어졌을 때. 아직 시작하지 않았으면 실행하지 않고, 실행 중이면 JDBC 문을 끊는다.
+         */
+        public void cancel() {
+            if (future == null) {
+                return;
+            }
+            cancelled = true;
+            future.cancel(true);
+            Session session = running.get();
+            if (session != null) {
+                try {
+                    session.cancelQuery();
+                } catch (RuntimeException e) {
+                    // 그사이 끝나서 세션이나 JDBC 문이 이미 닫힌 경우
+                    log.debug("count query could not be cancelled", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package study.querydsl.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import study.querydsl.entity.Team;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+
+import static org.hibernate.annotations.QueryHints.CACHEABLE;
+
+public interface TeamRepository extends JpaRepository<Team, Long>, TeamRepositoryCustom {
+
+    // 2차 캐시를 켠 경우(l2cache 프로필) 쿼리 캐시에 올라간다.
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
+    List<Team> findByName(String name);
+}
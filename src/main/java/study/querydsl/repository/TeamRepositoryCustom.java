@@ -0,0 +1,15 @@
+package study.querydsl.repository;
+
+import org.springframework.data.domain.Pageable;
+import study.querydsl.entity.Team;
+
+import java.util.List;
+
+public interface TeamRepositoryCustom {
+
+    /**
+     * 팀 한 페이지를 회원 컬렉션까지 채워서 돌려준다. 팀 수와 관계없이 쿼리는 두 번이다.
+     * (팀 id 페이지, 그 팀들과 회원을 fetch join)
+     */
+    List<Team> findAllWithMembers(Pageable pageable);
+}
@@ -0,0 +1,393 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.event.MemberChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * member.username 의 메모리 색인. usernameContains 는 3글자 조각(trigram), usernamePrefix 는 정렬된 username 으로 찾는다.
+ * like '%x%' 처럼 DB 인덱스를 못 쓰는 조건을 후보 id 로 바꿔 주고, 검색은 그 id 로 DB 에서 채운다.
+ * 돌려주는 id 는 username 을 직접 대조한 것이라 후보가 곧 결과다.
+ *
+ * 시작할 때 member_id 범위를 나눠 여러 스레드로 다시 만들고, 그 뒤로는 회원 변경 이벤트로 고친다.
+ * 다시 만드는 동안 들어온 이벤트는 모아 두었다가 새 색인에 다시 적용한다. (같은 id 의 최신 username 으로 덮으므로 두 번 적용돼도 같다)
+ * 벌크 변경이 오면 다시 만든다. 색인이 준비되지 않았거나 후보가 max-candidates 보다 많거나
+ * 쓰기 트랜잭션 안(커밋되지 않은 변경이 색인에 없다)이면 쓰지 않고, 호출한 쪽은 SQL like 로 찾는다.
+ */
+@Slf4j
+@Component
+public class UsernameIndex implements DisposableBean {
+
+    private static final int GRAM = 3;
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService rebuildScheduler;
+    private final ExecutorService rebuildExecutor;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final int rebuildThreads;
+    private final int maxCandidates;
+
+    private final Object rebuildLock = new Object();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Data data = new Data();
+    private boolean ready;
+    private boolean rebuilding;
+    private boolean bulkWhileRebuilding;
+    private List<MemberChangedEvent> missed = new ArrayList<>();
+
+    private final Counter hits;
+    private final Counter fallbacks;
+
+    public UsernameIndex(JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager,
+                         @Value("${member.username-index.rebuild-threads:4}") int rebuildThreads,
+                         @Value("${member.username-index.max-candidates:1000}") int maxCandidates,
+                         MeterRegistry registry) {
+        this.queryFactory = queryFactory;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.rebuildThreads = rebuildThreads;
+        this.rebuildScheduler = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "username-index-rebuild"));
+        this.rebuildExecutor = Executors.newFixedThreadPool(rebuildThreads, runnable -> daemon(runnable, "username-index-load"));
+        this.maxCandidates = maxCandidates;
+
+        this.hits = registry.counter("member.username.index.lookups", "result", "hit");
+        this.fallbacks = registry.counter("member.username.index.lookups", "result", "fallback");
+        Gauge.builder("member.username.index.size", this, UsernameIndex::size).register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        rebuildScheduler.shutdownNow();
+        rebuildExecutor.shutdownNow();
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleRebuild();
+    }
+
+    /**
+     * usernameContains, usernamePrefix 를 모두 만족하는 회원 id. 색인을 쓸 수 없으면 빈 Optional 이다.
+     */
+    public Optional<Set<Long>> find(String contains, String prefix) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            fallbacks.increment();
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            Set<Long> ids = ready ? data.find(hasText(contains) ? contains : null, hasText(prefix) ? prefix : null, maxCandidates) : null;
+            (ids != null ? hits : fallbacks).increment();
+            return Optional.ofNullable(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.getType() == MemberChangedEvent.Type.BULK) {
+                if (rebuilding) {
+                    bulkWhileRebuilding = true;
+                } else {
+                    ready = false;
+                    scheduleRebuild();
+                }
+                return;
+            }
+            if (rebuilding) {
+                missed.add(event);
+            }
+            apply(data, event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * DB 에서 다시 만든다. member_id 범위를 rebuild-threads 개로 나눠 각자 읽고 합친다.
+     * 한 번에 하나만 다시 만들고, 기다린 쪽은 앞의 것이 끝난 뒤 다시 만든다.
+     */
+    public void rebuild() {
+        boolean again;
+        synchronized (rebuildLock) {
+            lock.writeLock().lock();
+            try {
+                rebuilding = true;
+                bulkWhileRebuilding = false;
+                missed = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            long start = System.nanoTime();
+            Data rebuilt;
+            try {
+                rebuilt = load();
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    rebuilding = false;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (MemberChangedEvent event : missed) {
+                    apply(rebuilt, event);
+                }
+                missed = new ArrayList<>();
+                data = rebuilt;
+                rebuilding = false;
+                again = bulkWhileRebuilding;
+                ready = !again;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("username index rebuilt: {} members in {} ms", rebuilt.usernames.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+        if (again) {
+            scheduleRebuild();
+        }
+    }
+
+    private void scheduleRebuild() {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            rebuildScheduler.execute(() -> {
+                rebuildScheduled.set(false);
+                rebuildQuietly();
+            });
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("username index rebuild failed; searches fall back to SQL", e);
+        }
+    }
+
+    private Data load() {
+        Tuple range = readOnlyTransaction.execute(status -> queryFactory.select(member.id.min(), member.id.max())
+                .from(member)
+                .fetchOne());
+        Long min = range != null ? range.get(member.id.min()) : null;
+        Long max = range != null ? range.get(member.id.max()) : null;
+        if (min == null || max == null) {
+            return new Data();
+        }
+
+        long step = (max - min) / rebuildThreads + 1;
+        List<CompletableFuture<Data>> parts = new ArrayList<>();
+        for (long from = min; from <= max; from += step) {
+            long rangeFrom = from;
+            long rangeTo = Math.min(max, from + step - 1);
+            parts.add(CompletableFuture.supplyAsync(() -> loadRange(rangeFrom, rangeTo), rebuildExecutor));
+        }
+
+        Data merged = new Data();
+        for (CompletableFuture<Data> part : parts) {
+            merged.merge(part.join());
+        }
+        return merged;
+    }
+
+    private Data loadRange(long from, long to) {
+        return readOnlyTransaction.execute(status -> {
+            Data part = new Data();
+            for (Tuple row : queryFactory.select(member.id, member.username)
+                    .from(member)
+                    .where(member.id.between(from, to))
+                    .fetch()) {
+                part.put(row.get(member.id), row.get(member.username));
+            }
+            return part;
+        });
+    }
+
+    private static void apply(Data target, MemberChangedEvent event) {
+        switch (event.getType()) {
+            case INSERT:
+            case UPDATE:
+                target.put(event.getMemberId(), event.getAfter() != null ? event.getAfter().getUsername() : null);
+                break;
+            case DELETE:
+                target.remove(event.getMemberId());
+                break;
+            default:
+        }
+    }
+
+    private double size() {
+        lock.readLock().lock();
+        try {
+            return data.usernames.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static class Data {
+        final Map<Long, String> usernames = new HashMap<>();
+        final Map<String, Set<Long>> grams = new HashMap<>();
+        final NavigableMap<String, Set<Long>> sorted = new TreeMap<>();
+
+        void put(Long id, String username) {
+            remove(id);
+            if (id == null || username == null) {
+                return;
+            }
+            usernames.put(id, username);
+            sorted.computeIfAbsent(username, key -> new HashSet<>(2)).add(id);
+            for (String gram : grams(username)) {
+                grams.computeIfAbsent(gram, key -> new HashSet<>()).add(id);
+            }
+        }
+
+        void remove(Long id) {
+            String username = usernames.remove(id);
+            if (username == null) {
+                return;
+            }
+            removeFrom(sorted, username, id);
+            for (String gram : grams(username)) {
+                removeFrom(grams, gram, id);
+            }
+        }
+
+        void merge(Data other) {
+            usernames.putAll(other.usernames);
+            other.sorted.forEach((username, ids) -> sorted.merge(username, ids, Data::union));
+            other.grams.forEach((gram, ids) -> grams.merge(gram, ids, Data::union));
+        }
+
+        /**
+         * 후보가 limit 을 넘으면 null. 둘 다 null 이면 색인으로 좁힐 수 없으므로 null.
+         */
+        Set<Long> find(String contains, String prefix, int limit) {
+            Set<Long> ids;
+            if (prefix != null) {
+                ids = new HashSet<>();
+                for (Set<Long> matched : sorted.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                    ids.addAll(matched);
+                    if (ids.size() > limit) {
+                        return null;
+                    }
+                }
+                if (contains != null) {
+                    ids.removeIf(id -> !usernames.get(id).contains(contains));
+                }
+                return ids;
+            }
+            if (contains == null) {
+                return null;
+            }
+            if (contains.length() < GRAM) {
+                ids = new HashSet<>();
+                for (Map.Entry<Long, String> entry : usernames.entrySet()) {
+                    if (entry.getValue().contains(contains) && ids.add(entry.getKey()) && ids.size() > limit) {
+                        return null;
+                    }
+                }
+                return ids;
+            }
+
+            // 가장 짧은 목록에서 시작해서 나머지 조각에 모두 들어 있는 것만 남기고, 실제 문자열로 한 번 더 확인한다.
+            List<Set<Long>> postings = new ArrayList<>();
+            for (String gram : grams(contains)) {
+                Set<Long> posting = grams.get(gram);
+                if (posting == null) {
+                    return Collections.emptySet();
+                }
+                postings.add(posting);
+            }
+            postings.sort(Comparator.comparingInt(Set::size));
+            ids = new HashSet<>();
+            for (Long id : postings.get(0)) {
+                if (inAll(postings, id) && usernames.get(id).contains(contains)) {
+                    ids.add(id);
+                    if (ids.size() > limit) {
+                        return null;
+                    }
+                }
+            }
+            return ids;
+        }
+
+        private static boolean inAll(List<Set<Long>> postings, Long id) {
+            for (int i = 1; i < postings.size(); i++) {
+                if (!postings.get(i).contains(id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static Set<String> grams(String value) {
+            Set<String> grams = new HashSet<>();
+            for (int i = 0; i + GRAM <= value.length(); i++) {
+                grams.add(value.substring(i, i + GRAM));
+            }
+            return grams;
+        }
+
+        private static <K> void removeFrom(Map<K, Set<Long>> postings, K key, Long id) {
+            Set<Long> ids = postings.get(key);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+
+        private static Set<Long> union(Set<Long> left, Set<Long> right) {
+            left.addAll(right);
+            return left;
+        }
+    }
+}
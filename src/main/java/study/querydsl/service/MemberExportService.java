@@ -0,0 +1,165 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 회원 전체(팀 컬럼 포함)를 CSV 또는 NDJSON 으로 내보낸다.
+ * StatelessSession 의 스크롤 커서로 한 행씩 읽어서 바로 쓰므로 영속성 컨텍스트도, 결과 목록도 쌓이지 않는다.
+ * 스프링 트랜잭션과는 별개의 커넥션을 쓰므로 호출한 쪽 트랜잭션의 커밋되지 않은 변경은 보이지 않는다.
+ */
+@Slf4j
+@Service
+public class MemberExportService {
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private static final String QUERY = "select m.id, m.username, m.age, t.id, t.name"
+            + " from Member m left join m.team t order by m.id";
+    private static final String CSV_HEADER = "member_id,username,age,team_id,team_name";
+    private static final int FLUSH_INTERVAL = 1000;
+
+    private final SessionFactory sessionFactory;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final int fetchSize;
+    private final Counter exportedRows;
+
+    public MemberExportService(EntityManagerFactory emf,
+                               @Value("${member.export.fetch-size:1000}") int fetchSize,
+                               MeterRegistry registry) {
+        this.sessionFactory = emf.unwrap(SessionFactory.class);
+        this.fetchSize = fetchSize;
+        this.exportedRows = registry.counter("member.export.rows");
+    }
+
+    public ExportResult export(OutputStream out, Format format) throws IOException {
+        long start = System.nanoTime();
+        long rows;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            // 드라이버에 따라(PostgreSQL 등) 자동 커밋 상태에서는 fetch size 를 무시하고 결과를 한 번에 가져온다.
+            Transaction transaction = session.beginTransaction();
+            try (ScrollableResults results = session.createQuery(QUERY)
+                    .setFetchSize(fetchSize)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                rows = format == Format.CSV ? writeCsv(results, writer) : writeNdjson(results, writer);
+            } finally {
+                transaction.rollback();
+            }
+        }
+        writer.flush();
+        exportedRows.increment(rows);
+
+        ExportResult result = new ExportResult(rows, Duration.ofNanos(System.nanoTime() - start));
+        log.info("member export ({}): {} rows in {} ms ({} rows/s)", format, result.getRows(),
+                result.getElapsed().toMillis(), Math.round(result.getRowsPerSecond()));
+        return result;
+    }
+
+    public ExportResult export(Path file, Format format) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            return export(out, format);
+        }
+    }
+
+    private long writeCsv(ScrollableResults results, Writer writer) throws IOException {
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        long rows = 0;
+        while (results.next()) {
+            writer.write(String.valueOf(results.get(0)));
+            writer.write(',');
+            writer.write(csv((String) results.get(1)));
+            writer.write(',');
+            writer.write(String.valueOf(results.get(2)));
+            writer.write(',');
+            Object teamId = results.get(3);
+            writer.write(teamId != null ? teamId.toString() : "");
+            writer.write(',');
+            writer.write(csv((String) results.get(4)));
+            writer.write('\n');
+            if (++rows % FLUSH_INTERVAL == 0) {
+                writer.flush();
+            }
+        }
+        return rows;
+    }
+
+    private long writeNdjson(ScrollableResults results, Writer writer) throws IOException {
+        long rows = 0;
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            // 최상위 값 사이에 기본값인 공백 대신 줄바꿈을 넣는다.
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            while (results.next()) {
+                generator.writeStartObject();
+                generator.writeNumberField("memberId", (Long) results.get(0));
+                generator.writeStringField("username", (String) results.get(1));
+                generator.writeNumberField("age", (Integer) results.get(2));
+                Long teamId = (Long) results.get(3);
+                if (teamId != null) {
+                    generator.writeNumberField("teamId", teamId);
+                } else {
+                    generator.writeNullField("teamId");
+                }
+                generator.writeStringField("teamName", (String) results.get(4));
+                generator.writeEndObject();
+                if (++rows % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        return rows;
+    }
+
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @Getter
+    public static class ExportResult {
+        private final long rows;
+        private final Duration elapsed;
+
+        ExportResult(long rows, Duration elapsed) {
+            this.rows = rows;
+            this.elapsed = elapsed;
+        }
+
+        public double getRowsPerSecond() {
+            return rows * 1000.0 / Math.max(1, elapsed.toMillis());
+        }
+    }
+}
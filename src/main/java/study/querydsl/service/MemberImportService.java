@@ -0,0 +1,487 @@
+package study.querydsl.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.cache.TeamNameCache;
+import study.querydsl.dto.ImportResult;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangePublisher;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 회원 CSV 를 읽기 -> 파싱(여러 스레드) -> 팀 확인(한 스레드) -> 저장(한 스레드) 단계로 나눠서 가져온다.
+ * 단계 사이 큐는 크기가 정해져 있어서 저장이 밀리면 앞 단계들도 기다린다. (메모리에 쌓이지 않는다)
+ *
+ * 헤더 행이 있어야 하고 username, age, team_name 열을 이름으로 찾는다. 내보내기(MemberExportService)의 CSV 도 그대로 읽힌다.
+ * 없는 팀 이름은 새 팀으로 만든다. 만든 팀은 그 청크의 회원 저장이 실패해도 남는다.
+ * 청크마다 따로 커밋하므로 잘못된 행이나 실패한 청크가 있어도 나머지는 들어간다.
+ * 회원은 MemberJpaRepository.saveAll 로 넣으므로 행마다 변경 이벤트를 내지 않고, 가져오기가 끝난 뒤 BULK 이벤트 하나로 알린다.
+ * 청크마다 BULK 를 내면 그때마다 username 색인, 읽기 모델, 팀 통계를 처음부터 다시 만든다.
+ * 그 대신 가져오는 동안에는 이미 커밋된 청크가 캐시, 색인, 통계에 보이지 않을 수 있다.
+ * 따옴표 안의 줄바꿈은 지원하지 않는다.
+ */
+@Slf4j
+@Service
+public class MemberImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final TeamNameCache teamNameCache;
+    private final EntityChangePublisher entityChangePublisher;
+    private final EntityManager em;
+    private final TransactionTemplate chunkTransaction;
+    private final int parsers;
+    private final int chunkSize;
+    private final int queueCapacity;
+    private final Counter importedRows;
+    private final Counter failedRows;
+
+    public MemberImportService(MemberJpaRepository memberJpaRepository, TeamNameCache teamNameCache,
+                               EntityChangePublisher entityChangePublisher, EntityManager em,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${member.import.parsers:4}") int parsers,
+                               @Value("${member.import.chunk-size:1000}") int chunkSize,
+                               @Value("${member.import.queue-capacity:8}") int queueCapacity,
+                               MeterRegistry registry) {
+        this.memberJpaRepository = memberJpaRepository;
+        this.teamNameCache = teamNameCache;
+        this.entityChangePublisher = entityChangePublisher;
+        this.em = em;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.parsers = parsers;
+        this.chunkSize = chunkSize;
+        this.queueCapacity = queueCapacity;
+        this.importedRows = registry.counter("member.import.rows", "result", "imported");
+        this.failedRows = registry.counter("member.import.rows", "result", "failed");
+    }
+
+    public ImportResult importCsv(InputStream in) throws IOException {
+        long start = System.nanoTime();
+        Run run = new Run();
+
+        BlockingQueue<Chunk<String>> lines = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Chunk<Row>> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Chunk<Row>> resolved = new ArrayBlockingQueue<>(queueCapacity);
+        ExecutorService workers = Executors.newFixedThreadPool(parsers + 2, new NamedThreadFactory());
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            Columns columns = Columns.of(reader.readLine());
+
+            List<Future<?>> stages = new ArrayList<>();
+            AtomicInteger runningParsers = new AtomicInteger(parsers);
+            for (int i = 0; i < parsers; i++) {
+                stages.add(workers.submit(() -> stage(run, () -> parse(run, columns, lines, parsed, runningParsers))));
+            }
+            stages.add(workers.submit(() -> stage(run, () -> resolveTeams(run, parsed, resolved))));
+            stages.add(workers.submit(() -> stage(run, () -> entityChangePublisher.bulkMemberChange(() -> write(run, resolved)))));
+
+            read(run, reader, lines);
+            for (Future<?> stage : stages) {
+                await(run, stage);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        List<ImportResult.RowError> errors = new ArrayList<>(run.errors);
+        errors.sort(Comparator.comparingLong(ImportResult.RowError::getLine));
+        ImportResult result = new ImportResult(run.imported, run.failed, errors, Duration.ofNanos(System.nanoTime() - start));
+        log.info("member import: {} imported, {} failed in {} ms ({} rows/s)", result.getImported(), result.getFailed(),
+                result.getElapsed().toMillis(), Math.round(result.getRowsPerSecond()));
+        return result;
+    }
+
+    /**
+     * 1단계. 줄을 chunkSize 개씩 묶어서 넘긴다. 첫 줄(헤더)이 1번 줄이다.
+     */
+    private void read(Run run, BufferedReader reader, BlockingQueue<Chunk<String>> lines) throws IOException {
+        long lineNumber = 1;
+        List<String> chunk = new ArrayList<>(chunkSize);
+        long firstLine = lineNumber + 1;
+        String line;
+        while (!run.aborted.get() && (line = reader.readLine()) != null) {
+            lineNumber++;
+            chunk.add(line);
+            if (chunk.size() == chunkSize) {
+                put(run, lines, new Chunk<>(firstLine, chunk));
+                chunk = new ArrayList<>(chunkSize);
+                firstLine = lineNumber + 1;
+            }
+        }
+        if (!chunk.isEmpty()) {
+            put(run, lines, new Chunk<>(firstLine, chunk));
+        }
+        for (int i = 0; i < parsers; i++) {
+            put(run, lines, Chunk.end());
+        }
+    }
+
+    /**
+     * 2단계. 빈 줄은 건너뛰고, 형식이 틀린 행은 실패로 기록한다.
+     */
+    private Void parse(Run run, Columns columns, BlockingQueue<Chunk<String>> lines, BlockingQueue<Chunk<Row>> rows,
+                       AtomicInteger runningParsers) throws InterruptedException {
+        try {
+            while (!run.aborted.get()) {
+                Chunk<String> chunk = lines.poll(100, TimeUnit.MILLISECONDS);
+                if (chunk == null) {
+                    continue;
+                }
+                if (chunk.isEnd()) {
+                    break;
+                }
+                List<Row> parsed = new ArrayList<>(chunk.items.size());
+                for (int i = 0; i < chunk.items.size(); i++) {
+                    long lineNumber = chunk.firstLine + i;
+                    String line = chunk.items.get(i);
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        parsed.add(columns.row(lineNumber, parseLine(line)));
+                    } catch (IllegalArgumentException e) {
+                        run.fail(lineNumber, e.getMessage(), 1);
+                    }
+                }
+                put(run, rows, new Chunk<>(chunk.firstLine, parsed));
+            }
+        } finally {
+            // 마지막 파서가 끝나면 다음 단계에 끝을 알린다.
+            if (runningParsers.decrementAndGet() == 0) {
+                put(run, rows, Chunk.end());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 3단계. 팀 이름을 팀 id 로 바꾼다. 이번 가져오기에서 확인한 이름은 기억해 두고,
+     * 처음 보는 이름만 TeamNameCache 에 묻는다. 없는 팀은 청크마다 한 트랜잭션으로 만든다.
+     */
+    private Void resolveTeams(Run run, BlockingQueue<Chunk<Row>> parsed, BlockingQueue<Chunk<Row>> resolved)
+            throws InterruptedException {
+        Map<String, Long> teamIds = new HashMap<>();
+        while (!run.aborted.get()) {
+            Chunk<Row> chunk = parsed.poll(100, TimeUnit.MILLISECONDS);
+            if (chunk == null) {
+                continue;
+            }
+            if (chunk.isEnd()) {
+                put(run, resolved, chunk);
+                break;
+            }
+            Set<String> missing = new LinkedHashSet<>();
+            for (Row row : chunk.items) {
+                if (row.teamName != null && !teamIds.containsKey(row.teamName)) {
+                    List<Long> ids = teamNameCache.findIds(row.teamName);
+                    if (ids.isEmpty()) {
+                        missing.add(row.teamName);
+                    } else {
+                        teamIds.put(row.teamName, ids.get(0));
+                    }
+                }
+            }
+            if (!missing.isEmpty()) {
+                try {
+                    teamIds.putAll(createTeams(missing));
+                } catch (RuntimeException e) {
+                    log.warn("member import: creating teams {} failed", missing, e);
+                }
+            }
+            List<Row> rows = new ArrayList<>(chunk.items.size());
+            for (Row row : chunk.items) {
+                if (row.teamName == null) {
+                    rows.add(row);
+                } else if (teamIds.containsKey(row.teamName)) {
+                    row.teamId = teamIds.get(row.teamName);
+                    rows.add(row);
+                } else {
+                    run.fail(row.line, "team could not be created: " + row.teamName, 1);
+                }
+            }
+            put(run, resolved, new Chunk<>(chunk.firstLine, rows));
+        }
+        return null;
+    }
+
+    private Map<String, Long> createTeams(Set<String> names) {
+        return chunkTransaction.execute(status -> {
+            Map<String, Long> created = new HashMap<>();
+            for (String name : names) {
+                Team team = new Team(name);
+                em.persist(team);
+                created.put(name, team.getId());
+            }
+            return created;
+        });
+    }
+
+    /**
+     * 4단계. 청크 하나를 한 트랜잭션으로 저장한다. JDBC 배치는 saveAll 이 flush 할 때 나간다.
+     * 팀은 getReference 로 얻은 프록시를 setTeam 으로 외래 키만 건다. changeTeam 은 team.getMembers() 를 불러서
+     * 프록시를 초기화(팀 select)하므로 쓰지 않는다. 팀 쪽 컬렉션은 다음에 로딩될 때 DB 에서 읽힌다.
+     * bulkMemberChange 안에서 돌므로 saveAll 은 청크마다 BULK 를 내지 않고, 이 단계가 끝날 때 한 번 낸다.
+     */
+    private Void write(Run run, BlockingQueue<Chunk<Row>> resolved) {
+        while (!run.aborted.get()) {
+            Chunk<Row> chunk;
+            try {
+                chunk = resolved.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                run.aborted.set(true);
+                break;
+            }
+            if (chunk == null) {
+                continue;
+            }
+            if (chunk.isEnd()) {
+                break;
+            }
+            if (chunk.items.isEmpty()) {
+                continue;
+            }
+            try {
+                Long saved = chunkTransaction.execute(status -> memberJpaRepository.saveAll(chunk.items.stream()
+                        .map(this::toMember)));
+                run.imported(saved != null ? saved : 0);
+            } catch (RuntimeException e) {
+                log.warn("member import: chunk starting at line {} failed", chunk.firstLine, e);
+                run.fail(chunk.firstLine, "chunk of " + chunk.items.size() + " rows failed: " + e.getMessage(),
+                        chunk.items.size());
+            }
+        }
+        return null;
+    }
+
+    private Member toMember(Row row) {
+        Member member = new Member(row.username, row.age);
+        if (row.teamId != null) {
+            member.setTeam(em.getReference(Team.class, row.teamId));
+        }
+        return member;
+    }
+
+    /**
+     * 한 단계가 예외로 끝나면 나머지 단계가 큐 앞에서 기다리지 않도록 전체를 멈춘다.
+     */
+    private Void stage(Run run, Callable<Void> body) throws Exception {
+        try {
+            return body.call();
+        } catch (Exception | Error e) {
+            run.aborted.set(true);
+            throw e;
+        }
+    }
+
+    private <T> void put(Run run, BlockingQueue<Chunk<T>> queue, Chunk<T> chunk) {
+        try {
+            while (!run.aborted.get()) {
+                if (queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.aborted.set(true);
+        }
+    }
+
+    private void await(Run run, Future<?> stage) {
+        try {
+            stage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.aborted.set(true);
+            throw new IllegalStateException("member import interrupted", e);
+        } catch (ExecutionException e) {
+            run.aborted.set(true);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("member import failed", e.getCause());
+        }
+    }
+
+    /**
+     * 쉼표로 나누되 큰따옴표로 감싼 칸 안의 쉼표와 "" 는 값으로 읽는다.
+     */
+    static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static class Columns {
+        final int username;
+        final int age;
+        final int teamName;
+
+        Columns(int username, int age, int teamName) {
+            this.username = username;
+            this.age = age;
+            this.teamName = teamName;
+        }
+
+        static Columns of(String header) {
+            if (header == null) {
+                throw new IllegalArgumentException("empty csv");
+            }
+            List<String> names = parseLine(header.replace("\uFEFF", ""));
+            int username = names.indexOf("username");
+            int age = names.indexOf("age");
+            if (username < 0 || age < 0) {
+                throw new IllegalArgumentException("csv header must contain username and age: " + header);
+            }
+            return new Columns(username, age, names.indexOf("team_name"));
+        }
+
+        Row row(long line, List<String> fields) {
+            if (fields.size() <= Math.max(username, Math.max(age, teamName))) {
+                throw new IllegalArgumentException("expected at least " + (Math.max(username, Math.max(age, teamName)) + 1)
+                        + " columns but got " + fields.size());
+            }
+            String name = fields.get(username).trim();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("username is empty");
+            }
+            int parsedAge;
+            try {
+                parsedAge = Integer.parseInt(fields.get(age).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("age is not a number: " + fields.get(age));
+            }
+            String team = teamName >= 0 ? fields.get(teamName).trim() : "";
+            return new Row(line, name, parsedAge, team.isEmpty() ? null : team);
+        }
+    }
+
+    private static class Row {
+        final long line;
+        final String username;
+        final int age;
+        final String teamName;
+        Long teamId;
+
+        Row(long line, String username, int age, String teamName) {
+            this.line = line;
+            this.username = username;
+            this.age = age;
+            this.teamName = teamName;
+        }
+    }
+
+    private static class Chunk<T> {
+        private static final Chunk<?> END = new Chunk<>(-1, Collections.emptyList());
+
+        final long firstLine;
+        final List<T> items;
+
+        Chunk(long firstLine, List<T> items) {
+            this.firstLine = firstLine;
+            this.items = items;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <T> Chunk<T> end() {
+            return (Chunk<T>) END;
+        }
+
+        boolean isEnd() {
+            return this == END;
+        }
+    }
+
+    /**
+     * 가져오기 한 번의 진행 상황. 여러 스테이지 스레드가 함께 고친다.
+     */
+    private class Run {
+        final AtomicBoolean aborted = new AtomicBoolean();
+        final List<ImportResult.RowError> errors = Collections.synchronizedList(new ArrayList<>());
+        volatile long imported;
+        volatile long failed;
+
+        synchronized void imported(long rows) {
+            imported += rows;
+            importedRows.increment(rows);
+        }
+
+        synchronized void fail(long line, String message, long rows) {
+            failed += rows;
+            failedRows.increment(rows);
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportResult.RowError(line, message));
+            }
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "member-import-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
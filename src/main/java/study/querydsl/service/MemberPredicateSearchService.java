@@ -0,0 +1,207 @@
+package study.querydsl.service;
+
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Predicate;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import study.querydsl.dto.MemberCursor;
+import study.querydsl.dto.MemberCursorPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberCountEstimator;
+import study.querydsl.repository.MemberRepository;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * @QuerydslPredicate 검색을 실행하기 전에 비용을 어림해서 받을지 정한다.
+ *
+ * username 이나 team.name 이 있으면 인덱스로 찾고, 읽는 행 수는 결과 건수로 본다.
+ * 둘 다 없으면 (age 만 있어도) 테이블 전체를 읽는 것으로 보고 전체 건수를 쓴다. 건수는 MemberCountEstimator 로 어림한다.
+ * 읽는 행이 max-examined-rows 를 넘으면 거절하고, 결과는 max-rows 건씩 잘라서 다음 커서와 함께 준다.
+ * 전체 스캔은 동시에 max-concurrent-scans 개까지만 실행해서 커넥션 풀을 다 가져가지 못하게 한다.
+ * 인덱스 검색도 결과가 max-examined-rows 가까이 될 수 있으므로 스캔과 같은 제한 시간을 둔다.
+ */
+@Service
+public class MemberPredicateSearchService {
+
+    private final MemberRepository memberRepository;
+    private final MemberCountEstimator memberCountEstimator;
+    private final TransactionTemplate scanTransaction;
+    private final Semaphore scanPermits;
+    private final Duration acquireTimeout;
+    private final int maxRows;
+    private final long maxExaminedRows;
+
+    private final Counter accepted;
+    private final Counter capped;
+    private final Counter rejected;
+    private final Counter throttled;
+
+    public MemberPredicateSearchService(MemberRepository memberRepository, MemberCountEstimator memberCountEstimator,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${member.predicate-search.max-rows:1000}") int maxRows,
+                                        @Value("${member.predicate-search.max-examined-rows:100000}") long maxExaminedRows,
+                                        @Value("${member.predicate-search.max-concurrent-scans:2}") int maxConcurrentScans,
+                                        @Value("${member.predicate-search.acquire-timeout:100ms}") Duration acquireTimeout,
+                                        @Value("${member.predicate-search.scan-timeout:2s}") Duration scanTimeout,
+                                        MeterRegistry registry) {
+        this.memberRepository = memberRepository;
+        this.memberCountEstimator = memberCountEstimator;
+        this.maxRows = maxRows;
+        this.maxExaminedRows = maxExaminedRows;
+        this.scanPermits = new Semaphore(maxConcurrentScans);
+        this.acquireTimeout = acquireTimeout;
+
+        this.scanTransaction = new TransactionTemplate(transactionManager);
+        this.scanTransaction.setReadOnly(true);
+        this.scanTransaction.setTimeout((int) Math.max(1, (scanTimeout.toMillis() + 999) / 1000));
+
+        this.accepted = registry.counter("member.predicate.search.admission", "result", "accepted");
+        this.capped = registry.counter("member.predicate.search.admission", "result", "capped");
+        this.rejected = registry.counter("member.predicate.search.admission", "result", "rejected");
+        this.throttled = registry.counter("member.predicate.search.admission", "result", "throttled");
+    }
+
+    public MemberCursorPage search(Predicate predicate, MemberCursor cursor, int size) {
+        Cost cost = estimate(predicate);
+        if (cost.getExaminedRows() > maxExaminedRows) {
+            rejected.increment();
+            throw new QueryTooExpensiveException(cost, maxExaminedRows);
+        }
+
+        int limit = Math.min(Math.max(size, 1), maxRows);
+        (limit < size ? capped : accepted).increment();
+        if (cost.getAccess() == Access.INDEX) {
+            return scanTransaction.execute(status -> memberRepository.searchKeyset(predicate, cursor, limit));
+        }
+
+        acquireScanPermit();
+        try {
+            return scanTransaction.execute(status -> memberRepository.searchKeyset(predicate, cursor, limit));
+        } finally {
+            scanPermits.release();
+        }
+    }
+
+    public Cost estimate(Predicate predicate) {
+        MemberSearchCondition condition = toCondition(predicate);
+        if (condition == null) {
+            long total = memberCountEstimator.estimate(new MemberSearchCondition());
+            return new Cost(Access.SCAN, total, total);
+        }
+        long rows = memberCountEstimator.estimate(condition);
+        if (condition.getUsername() != null || condition.getTeamName() != null) {
+            return new Cost(Access.INDEX, rows, rows);
+        }
+        return new Cost(Access.SCAN, rows, memberCountEstimator.estimate(new MemberSearchCondition()));
+    }
+
+    private void acquireScanPermit() {
+        try {
+            if (scanPermits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throttled.increment();
+        throw new TooManyScansException();
+    }
+
+    /**
+     * MemberRepository.customize 가 만드는 모양(and 로 묶인 eq, between)만 알아본다.
+     * 그 밖의 모양이면 null 을 돌려주고, 호출한 쪽은 전체 스캔으로 본다.
+     */
+    static MemberSearchCondition toCondition(Predicate predicate) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        Expression<?> expression = predicate != null ? ExpressionUtils.extract(predicate) : null;
+        return expression == null || collect(expression, condition) ? condition : null;
+    }
+
+    private static boolean collect(Expression<?> expression, MemberSearchCondition condition) {
+        if (!(expression instanceof Operation)) {
+            return false;
+        }
+        Operation<?> operation = (Operation<?>) expression;
+        if (operation.getOperator() == Ops.AND) {
+            return collect(operation.getArg(0), condition) && collect(operation.getArg(1), condition);
+        }
+
+        Expression<?> path = operation.getArg(0);
+        if (operation.getOperator() == Ops.EQ && operation.getArg(1) instanceof Constant) {
+            Object value = ((Constant<?>) operation.getArg(1)).getConstant();
+            if (path.equals(member.username)) {
+                condition.setUsername((String) value);
+                return true;
+            }
+            if (path.equals(member.team.name)) {
+                condition.setTeamName((String) value);
+                return true;
+            }
+            if (path.equals(member.age)) {
+                condition.setAgeGoe((Integer) value);
+                condition.setAgeLoe((Integer) value);
+                return true;
+            }
+        }
+        if (operation.getOperator() == Ops.BETWEEN && path.equals(member.age)
+                && operation.getArg(1) instanceof Constant && operation.getArg(2) instanceof Constant) {
+            condition.setAgeGoe((Integer) ((Constant<?>) operation.getArg(1)).getConstant());
+            condition.setAgeLoe((Integer) ((Constant<?>) operation.getArg(2)).getConstant());
+            return true;
+        }
+        return false;
+    }
+
+    public enum Access {
+        INDEX, SCAN
+    }
+
+    /**
+     * 어림한 결과 건수와, 그 결과를 얻으려고 읽어야 하는 행 수.
+     */
+    @Getter
+    @ToString
+    public static class Cost {
+        private final Access access;
+        private final long estimatedRows;
+        private final long examinedRows;
+
+        public Cost(Access access, long estimatedRows, long examinedRows) {
+            this.access = access;
+            this.estimatedRows = estimatedRows;
+            this.examinedRows = examinedRows;
+        }
+    }
+
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public static class QueryTooExpensiveException extends IllegalArgumentException {
+        public QueryTooExpensiveException(Cost cost, long maxExaminedRows) {
+            super("query would examine about " + cost.getExaminedRows() + " rows (limit " + maxExaminedRows
+                    + "); add a username or team.name condition");
+        }
+    }
+
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public static class TooManyScansException extends IllegalStateException {
+        public TooManyScansException() {
+            super("too many concurrent unindexed searches; retry later");
+        }
+    }
+}
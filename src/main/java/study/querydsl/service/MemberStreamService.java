@@ -0,0 +1,67 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 검색 결과를 한 행씩 읽어서 바로 출력 스트림에 쓴다.
+ * 결과 전체를 List 로 들고 있지 않으므로 결과 크기와 상관없이 힙 사용량이 일정하다.
+ */
+@Service
+@RequiredArgsConstructor
+public class MemberStreamService {
+
+    public enum Format {
+        NDJSON, JSON_ARRAY
+    }
+
+    private static final int FLUSH_INTERVAL = 1000;
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${member.stream.fetch-size:500}")
+    private int fetchSize;
+
+    @Transactional(readOnly = true)
+    public long write(MemberSearchCondition condition, OutputStream out, Format format) throws IOException {
+        long rows = 0;
+        try (Stream<MemberTeamDto> stream = memberJpaRepository.searchStream(condition, fetchSize);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+            if (format == Format.JSON_ARRAY) {
+                generator.writeStartArray();
+            } else {
+                // 최상위 값 사이에 기본값인 공백 대신 줄바꿈을 넣는다.
+                generator.setRootValueSeparator(new SerializedString("\n"));
+            }
+
+            Iterator<MemberTeamDto> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                generator.writeObject(iterator.next());
+                if (++rows % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+
+            if (format == Format.JSON_ARRAY) {
+                generator.writeEndArray();
+            }
+        }
+        return rows;
+    }
+}
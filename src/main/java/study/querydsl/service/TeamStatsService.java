@@ -0,0 +1,232 @@
+package study.querydsl.service;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.event.EntityChangePublisher;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberSnapshot;
+import study.querydsl.event.TeamChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀별 회원 수, 나이 평균/최소/최대를 메모리에 들고 있다가 회원 변경 이벤트마다 그 팀만 고친다.
+ * 조회는 팀 수에 비례하고 회원 전체를 집계하지 않는다.
+ *
+ * 벌크 연산처럼 무엇이 바뀌었는지 모르면 다음 조회 때 DB 에서 다시 만든다.
+ * 다시 만드는 동안 들어온 이벤트는 그 결과에 반영됐는지 알 수 없으므로 한 번 더 다시 만든다.
+ * 다시 만든 뒤에 들어온 이벤트라도 커밋 순번이 읽기를 마친 시점의 순번 이하면, 읽기 전에 커밋되어 이미 반영됐을 수 있으므로
+ * 더하지 않고 다시 만든다.
+ */
+@Service
+public class TeamStatsService {
+
+    private final JPAQueryFactory queryFactory;
+    private final EntityChangePublisher entityChangePublisher;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final Object rebuildLock = new Object();
+    private final Map<Long, String> teamNames = new HashMap<>();
+    private final Map<Long, Stats> stats = new HashMap<>();
+    private boolean stale = true;
+    private boolean rebuilding;
+    private boolean changedWhileRebuilding;
+    // 지금 통계를 읽기를 마친 시점의 마지막 커밋 순번. 이보다 큰 순번의 이벤트만 더한다.
+    private long loadedCommit;
+
+    public TeamStatsService(JPAQueryFactory queryFactory, EntityChangePublisher entityChangePublisher,
+                            PlatformTransactionManager transactionManager) {
+        this.queryFactory = queryFactory;
+        this.entityChangePublisher = entityChangePublisher;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 팀 이름 순. 회원이 없는 팀은 건수 0, 나이 통계는 null 이다.
+     */
+    public List<TeamStatsDto> findAll() {
+        // 쓰기 트랜잭션 안에서 읽은 값에는 커밋되지 않은 변경이 섞여 있을 수 있으므로 남겨 두지 않는다.
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            Snapshot snapshot = load();
+            return toDtos(snapshot.teamNames, snapshot.stats);
+        }
+
+        synchronized (this) {
+            if (!stale) {
+                return toDtos(teamNames, stats);
+            }
+        }
+        // 다시 만드는 것은 한 번에 하나만. 기다린 쪽은 그 결과를 쓴다.
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                if (!stale) {
+                    return toDtos(teamNames, stats);
+                }
+                rebuilding = true;
+                changedWhileRebuilding = false;
+            }
+
+            Snapshot snapshot;
+            long commit;
+            try {
+                snapshot = readOnlyTransaction.execute(status -> load());
+                commit = entityChangePublisher.lastCommit();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    rebuilding = false;
+                }
+                throw e;
+            }
+
+            synchronized (this) {
+                teamNames.clear();
+                teamNames.putAll(snapshot.teamNames);
+                stats.clear();
+                stats.putAll(snapshot.stats);
+                rebuilding = false;
+                stale = changedWhileRebuilding;
+                loadedCommit = commit;
+                return toDtos(teamNames, stats);
+            }
+        }
+    }
+
+    @EventListener
+    public synchronized void onMemberChanged(MemberChangedEvent event) {
+        if (!accepting(event.getCommit())) {
+            return;
+        }
+        switch (event.getType()) {
+            case INSERT:
+                add(event.getAfter());
+                break;
+            case DELETE:
+                remove(event.getBefore());
+                break;
+            case UPDATE:
+                if (event.getBefore() == null) {
+                    stale = true;
+                    return;
+                }
+                // changeTeam 으로 팀이 바뀐 경우 이전 팀에서 빼고 새 팀에 더한다.
+                remove(event.getBefore());
+                add(event.getAfter());
+                break;
+            default:
+                stale = true;
+        }
+    }
+
+    @EventListener
+    public synchronized void onTeamChanged(TeamChangedEvent event) {
+        if (!accepting(event.getCommit())) {
+            return;
+        }
+        if (event.getType() == TeamChangedEvent.Type.DELETE) {
+            teamNames.remove(event.getTeamId());
+            stats.remove(event.getTeamId());
+        } else {
+            teamNames.put(event.getTeamId(), event.getName());
+        }
+    }
+
+    private boolean accepting(long commit) {
+        if (rebuilding) {
+            changedWhileRebuilding = true;
+            return false;
+        }
+        // 다시 만들기 전에 커밋을 시작한 트랜잭션의 이벤트가 늦게 도착한 경우
+        if (commit != 0 && commit <= loadedCommit) {
+            stale = true;
+        }
+        // 어차피 다시 만들 것이므로 고치지 않는다.
+        return !stale;
+    }
+
+    private void add(MemberSnapshot snapshot) {
+        if (snapshot != null && snapshot.getTeamId() != null) {
+            stats.computeIfAbsent(snapshot.getTeamId(), id -> new Stats()).add(snapshot.getAge(), 1);
+        }
+    }
+
+    private void remove(MemberSnapshot snapshot) {
+        if (snapshot != null && snapshot.getTeamId() != null) {
+            Stats teamStats = stats.get(snapshot.getTeamId());
+            if (teamStats != null) {
+                teamStats.add(snapshot.getAge(), -1);
+            }
+        }
+    }
+
+    private Snapshot load() {
+        Map<Long, String> names = new HashMap<>();
+        for (Tuple row : queryFactory.select(team.id, team.name).from(team).fetch()) {
+            names.put(row.get(team.id), row.get(team.name));
+        }
+
+        Map<Long, Stats> loaded = new HashMap<>();
+        for (Tuple row : queryFactory.select(member.team.id, member.age, member.count())
+                .from(member)
+                .where(member.team.isNotNull())
+                .groupBy(member.team.id, member.age)
+                .fetch()) {
+            loaded.computeIfAbsent(row.get(member.team.id), id -> new Stats())
+                    .add(row.get(member.age), row.get(member.count()));
+        }
+        return new Snapshot(names, loaded);
+    }
+
+    private static List<TeamStatsDto> toDtos(Map<Long, String> teamNames, Map<Long, Stats> stats) {
+        List<TeamStatsDto> result = new ArrayList<>(teamNames.size());
+        teamNames.forEach((teamId, name) -> {
+            Stats teamStats = stats.get(teamId);
+            result.add(teamStats == null || teamStats.count == 0
+                    ? new TeamStatsDto(teamId, name, 0, null, null, null)
+                    : new TeamStatsDto(teamId, name, teamStats.count, (double) teamStats.ageSum / teamStats.count,
+                    teamStats.ages.firstKey(), teamStats.ages.lastKey()));
+        });
+        result.sort(Comparator.comparing(TeamStatsDto::getTeamName, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result;
+    }
+
+    /**
+     * 최소/최대를 빼기에도 맞게 고칠 수 있도록 나이별 인원을 들고 있다.
+     */
+    private static class Stats {
+        long count;
+        long ageSum;
+        final TreeMap<Integer, Long> ages = new TreeMap<>();
+
+        void add(int age, long members) {
+            count += members;
+            ageSum += (long) age * members;
+            ages.merge(age, members, (a, b) -> a + b == 0 ? null : a + b);
+        }
+    }
+
+    private static class Snapshot {
+        final Map<Long, String> teamNames;
+        final Map<Long, Stats> stats;
+
+        Snapshot(Map<Long, String> teamNames, Map<Long, Stats> stats) {
+            this.teamNames = teamNames;
+            this.stats = stats;
+        }
+    }
+}
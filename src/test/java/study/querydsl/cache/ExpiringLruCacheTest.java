@@ -0,0 +1,66 @@
+package study.querydsl.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpiringLruCacheTest {
+
+    AtomicLong now = new AtomicLong();
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        ExpiringLruCache<String, Long> cache = new ExpiringLruCache<>(2, 1_000, value -> 1L, now::get);
+        cache.put("a", 1L);
+        cache.put("b", 2L);
+        cache.getIfPresent("a");
+        cache.put("c", 3L);
+
+        assertThat(cache.getIfPresent("a")).isEqualTo(1L);
+        assertThat(cache.getIfPresent("b")).isNull();
+        assertThat(cache.getIfPresent("c")).isEqualTo(3L);
+        assertThat(cache.evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void expireAfterTtl() {
+        ExpiringLruCache<String, Long> cache = new ExpiringLruCache<>(10, 1_000, value -> 1L, now::get);
+        cache.put("a", 1L);
+
+        now.set(999);
+        assertThat(cache.getIfPresent("a")).isEqualTo(1L);
+
+        now.set(1_000);
+        assertThat(cache.getIfPresent("a")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void evictByWeight() {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<>(5, 1_000, value -> value.length(), now::get);
+        cache.put("a", "aaa");
+        cache.put("b", "bbb");
+
+        assertThat(cache.getIfPresent("a")).isNull();
+        assertThat(cache.weight()).isEqualTo(3);
+
+        cache.put("c", "cccccc");
+        assertThat(cache.getIfPresent("c")).isNull();
+    }
+
+    @Test
+    public void skipPutWhenInvalidatedWhileLoading() {
+        ExpiringLruCache<String, Long> cache = new ExpiringLruCache<>(10, 1_000, value -> 1L, now::get);
+
+        Long loaded = cache.get("a", () -> {
+            cache.invalidateAll();
+            return 1L;
+        });
+
+        assertThat(loaded).isEqualTo(1L);
+        assertThat(cache.getIfPresent("a")).isNull();
+        assertThat(cache.hitRatio()).isZero();
+    }
+}
@@ -0,0 +1,98 @@
+package study.querydsl.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 캐시는 커밋 이후 이벤트로 비워지므로 테스트 트랜잭션으로 감싸지 않고 직접 정리한다.
+@SpringBootTest
+class MemberCountCacheTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MeterRegistry registry;
+
+    TransactionTemplate tx;
+    MemberSearchCondition condition;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            for (int i = 0; i < 5; i++) {
+                em.persist(new Member("member" + i, 10 + i, teamA));
+            }
+        });
+        condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+    }
+
+    @AfterEach
+    void tearDown() {
+        memberRepository.deleteAll();
+        teamRepository.deleteAll();
+    }
+
+    @Test
+    public void totalFollowsCommittedInsert() {
+        assertThat(total()).isEqualTo(5);
+        double hits = hits();
+        assertThat(total()).isEqualTo(5);
+        assertThat(hits()).isEqualTo(hits + 1);
+
+        // 롤백된 변경은 이벤트가 없으므로 캐시된 건수를 그대로 쓴다.
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("rolledBack", 30, teamRepository.findByName("teamA").get(0)));
+            em.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(total()).isEqualTo(5);
+        assertThat(hits()).isEqualTo(hits + 2);
+
+        tx.executeWithoutResult(status ->
+                em.persist(new Member("member5", 30, teamRepository.findByName("teamA").get(0))));
+
+        // 커밋 이후 이벤트로 비워져서 다시 센다.
+        assertThat(total()).isEqualTo(6);
+        assertThat(hits()).isEqualTo(hits + 2);
+    }
+
+    /**
+     * 꽉 찬 첫 페이지라 건수를 캐시에서 가져온다.
+     */
+    private long total() {
+        return memberRepository.searchPageComplex(condition, PageRequest.of(0, 2)).getTotalElements();
+    }
+
+    private double hits() {
+        return registry.get("member.count.cache.requests").tag("result", "hit").functionCounter().count();
+    }
+}
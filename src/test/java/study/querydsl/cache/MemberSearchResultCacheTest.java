@@ -0,0 +1,69 @@
+package study.querydsl.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.event.MemberChangedEvent;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberSearchResultCacheTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    MemberSearchResultCache cache = new MemberSearchResultCache(5, Duration.ofMinutes(1), registry);
+    AtomicInteger queries = new AtomicInteger();
+
+    @Test
+    public void hitByNormalizedCondition() {
+        MemberSearchCondition first = condition("teamA");
+        MemberSearchCondition second = condition("teamA");
+        second.setUsername("");
+
+        cache.get(first, search(2));
+        List<MemberTeamDto> cached = cache.get(second, search(2));
+
+        assertThat(cached).hasSize(2);
+        assertThat(queries).hasValue(1);
+        assertThat(registry.get("member.search.cache.rows").gauge().value()).isEqualTo(3);
+    }
+
+    @Test
+    public void skipResultLargerThanMaxRows() {
+        cache.get(condition("teamA"), search(10));
+        cache.get(condition("teamA"), search(10));
+
+        assertThat(queries).hasValue(2);
+    }
+
+    @Test
+    public void invalidateOnMemberChange() {
+        cache.get(condition("teamA"), search(1));
+        cache.onMemberChanged(MemberChangedEvent.bulk());
+        cache.get(condition("teamA"), search(1));
+
+        assertThat(queries).hasValue(2);
+    }
+
+    private MemberSearchCondition condition(String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        return condition;
+    }
+
+    private Supplier<List<MemberTeamDto>> search(int rows) {
+        return () -> {
+            queries.incrementAndGet();
+            MemberTeamDto[] result = new MemberTeamDto[rows];
+            for (int i = 0; i < rows; i++) {
+                result[i] = new MemberTeamDto((long) i, "member" + i, i, 1L, "teamA");
+            }
+            return List.of(result);
+        };
+    }
+}
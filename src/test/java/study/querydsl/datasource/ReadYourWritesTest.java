@@ -0,0 +1,40 @@
+package study.querydsl.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.servlet.http.Cookie;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadYourWritesTest {
+
+    @AfterEach
+    void clear() {
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    public void restorePinWithinWindow() {
+        ReadYourWrites.restore(request(System.currentTimeMillis() + 3000), Duration.ofSeconds(5));
+
+        assertThat(ReadYourWrites.isPinned()).isTrue();
+    }
+
+    @Test
+    public void ignorePinBeyondWindow() {
+        ReadYourWrites.restore(request(Long.MAX_VALUE), Duration.ofSeconds(5));
+        assertThat(ReadYourWrites.isPinned()).isFalse();
+
+        ReadYourWrites.restore(request(System.currentTimeMillis() + 60_000), Duration.ofSeconds(5));
+        assertThat(ReadYourWrites.isPinned()).isFalse();
+    }
+
+    private MockHttpServletRequest request(long until) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(ReadYourWrites.COOKIE_NAME, Long.toString(until)));
+        return request;
+    }
+}
@@ -0,0 +1,88 @@
+package study.querydsl.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replication;DB_CLOSE_DELAY=-1",
+        "datasource.replication.enabled=true",
+        "datasource.replication.lag-check-interval=1h",
+        "datasource.replication.max-lag=5s",
+        "datasource.replication.replicas[0].name=replica-1",
+        "datasource.replication.replicas[0].url=jdbc:h2:mem:replication;DB_CLOSE_DELAY=-1",
+        "datasource.replication.replicas[0].username=sa",
+        "datasource.replication.replicas[0].password=1234",
+        // 60초 뒤처진 복제본. 읽기를 받으면 안 된다.
+        "datasource.replication.replicas[1].name=replica-2",
+        "datasource.replication.replicas[1].url=jdbc:h2:mem:replication;DB_CLOSE_DELAY=-1",
+        "datasource.replication.replicas[1].username=sa",
+        "datasource.replication.replicas[1].password=1234",
+        "datasource.replication.replicas[1].lag-query=select 60000",
+        "member.search-cache.max-rows=0",
+})
+class ReplicationRoutingDataSourceTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @BeforeEach
+    @AfterEach
+    void clearPin() {
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    public void readOnlyTransactionGoesToReplica() {
+        double primary = routed(ReplicationRoutingDataSource.PRIMARY);
+        double replica1 = routed("replica-1");
+        double replica2 = routed("replica-2");
+
+        memberRepository.search(new MemberSearchCondition());
+        memberRepository.findByUsername("member1");
+
+        assertThat(routed("replica-1")).isEqualTo(replica1 + 2);
+        assertThat(routed("replica-2")).isEqualTo(replica2);
+        assertThat(routed(ReplicationRoutingDataSource.PRIMARY)).isEqualTo(primary);
+    }
+
+    @Test
+    public void readAfterWriteIsPinnedToPrimary() {
+        TransactionTemplate write = new TransactionTemplate(transactionManager);
+        write.executeWithoutResult(status -> memberRepository.save(new Member("pinned", 10)));
+
+        double replica1 = routed("replica-1");
+        List<Member> result = memberRepository.findByUsername("pinned");
+
+        assertThat(result).extracting("username").containsExactly("pinned");
+        assertThat(routed("replica-1")).isEqualTo(replica1);
+
+        ReadYourWrites.clear();
+        memberRepository.findByUsername("pinned");
+        assertThat(routed("replica-1")).isEqualTo(replica1 + 1);
+
+        memberRepository.deleteAll(result);
+    }
+
+    private double routed(String target) {
+        return registry.counter("datasource.routing", "target", target).count();
+    }
+}
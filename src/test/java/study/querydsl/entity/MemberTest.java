@@ -9,6 +9,8 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 
 @SpringBootTest
 @Transactional
@@ -47,4 +49,18 @@ class MemberTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void newMemberJoinsLoadedTeamBeforeFlush() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.flush();
+        em.clear();
+
+        // 컬렉션을 아직 읽지 않은 팀이어도 같은 세션에서 바로 보인다.
+        Team team = em.find(Team.class, teamA.getId());
+        Member member1 = new Member("member1", 10, team);
+        em.persist(member1);
+
+        assertThat(team.getMembers()).containsExactly(member1);
+    }
+}
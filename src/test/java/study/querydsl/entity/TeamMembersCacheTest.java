@@ -0,0 +1,109 @@
+package study.querydsl.entity;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 2차 캐시는 커밋된 값만 담으므로 테스트 트랜잭션으로 감싸지 않고 직접 정리한다.
+@SpringBootTest
+@ActiveProfiles("l2cache")
+class TeamMembersCacheTest {
+
+    private static final String MEMBERS = Team.class.getName() + ".members";
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    Long teamAId;
+    Long teamBId;
+    Long member1Id;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            Member member1 = new Member("member1", 10, teamA);
+            em.persist(member1);
+            teamAId = teamA.getId();
+            teamBId = teamB.getId();
+            member1Id = member1.getId();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        memberRepository.deleteAll();
+        teamRepository.deleteAll();
+        emf.getCache().evictAll();
+    }
+
+    @Test
+    public void insertEvictsTeamMembers() {
+        assertThat(members(teamAId)).containsExactly("member1");
+        assertThat(cached(teamAId)).isTrue();
+
+        // 가져오기처럼 팀 컬렉션을 건드리지 않고 외래 키만 건다.
+        tx.executeWithoutResult(status -> {
+            Member member2 = new Member("member2", 20);
+            member2.setTeam(em.getReference(Team.class, teamAId));
+            em.persist(member2);
+        });
+
+        assertThat(cached(teamAId)).isFalse();
+        assertThat(members(teamAId)).containsExactlyInAnyOrder("member1", "member2");
+    }
+
+    @Test
+    public void moveEvictsBothTeams() {
+        assertThat(members(teamAId)).containsExactly("member1");
+        assertThat(members(teamBId)).isEmpty();
+
+        tx.executeWithoutResult(status ->
+                em.find(Member.class, member1Id).changeTeam(em.find(Team.class, teamBId)));
+
+        assertThat(members(teamAId)).isEmpty();
+        assertThat(members(teamBId)).containsExactly("member1");
+    }
+
+    private List<String> members(Long teamId) {
+        return tx.execute(status -> em.find(Team.class, teamId).getMembers().stream()
+                .map(Member::getUsername)
+                .collect(Collectors.toList()));
+    }
+
+    private boolean cached(Long teamId) {
+        return emf.unwrap(SessionFactory.class).getCache().containsCollection(MEMBERS, teamId);
+    }
+}
@@ -0,0 +1,48 @@
+package study.querydsl.metrics;
+
+import com.p6spy.engine.common.ConnectionInformation;
+import com.p6spy.engine.common.StatementInformation;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// IndexAdvisor 는 local 프로필 빈이라 직접 만들고, p6spy 가 넘겨주는 실행 정보를 흉내 내서 넣는다.
+@SpringBootTest
+class IndexAdvisorTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Test
+    public void adviseTableScanOnlyForUnindexedFilter() throws SQLException {
+        IndexAdvisor indexAdvisor = new IndexAdvisor();
+
+        try (Connection connection = dataSource.getConnection()) {
+            execute(indexAdvisor, connection, "select * from member where age > 10");
+            execute(indexAdvisor, connection, "select * from member where age > 20");
+            execute(indexAdvisor, connection, "select * from member where username = 'member1'");
+            execute(indexAdvisor, connection, "select * from member where team_id = 1 and age > 10");
+        }
+
+        List<IndexAdvisor.Advice> tableScans = indexAdvisor.tableScans();
+        assertThat(tableScans).hasSize(1);
+        IndexAdvisor.Advice advice = tableScans.get(0);
+        assertThat(advice.getSql()).isEqualTo("select * from member where age > ?");
+        assertThat(advice.getTableScans()).containsExactly("MEMBER");
+        assertThat(advice.getExecutions()).isEqualTo(2);
+    }
+
+    private void execute(IndexAdvisor indexAdvisor, Connection connection, String sql) {
+        StatementInformation statementInformation =
+                new StatementInformation(ConnectionInformation.fromDataSource(dataSource, connection, 0));
+        statementInformation.setStatementQuery(sql);
+        indexAdvisor.onAfterAnyExecute(statementInformation, 0, null);
+    }
+}
@@ -0,0 +1,67 @@
+package study.querydsl.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "sql.budget.max-repeats=3")
+@Transactional
+class SqlStatementCounterTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    SqlStatementCounter sqlStatementCounter;
+
+    @Test
+    public void normalize() {
+        assertThat(SqlStatementCounter.normalize("select *\n  from member where age > 10 and username = 'a''b'"))
+                .isEqualTo("select * from member where age > ? and username = ?");
+        assertThat(SqlStatementCounter.normalize("select * from member where member_id in (?, ?, ?)"))
+                .isEqualTo("select * from member where member_id in (?)");
+    }
+
+    @Test
+    public void countStatementsBySql() {
+        SqlStatementCounter.Scope scope = sqlStatementCounter.begin("test");
+        try {
+            em.createQuery("select m from Member m", Member.class).getResultList();
+            em.createQuery("select m from Member m", Member.class).getResultList();
+        } finally {
+            sqlStatementCounter.end(scope);
+        }
+
+        assertThat(scope.getStatements()).isEqualTo(2);
+        assertThat(scope.getStatementsBySql()).hasSize(1).containsValue(2);
+    }
+
+    @Test
+    public void strictModeFailsOnRepeatedSelect() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Member member = new Member("member" + i, i);
+            em.persist(member);
+            ids.add(member.getId());
+        }
+        em.flush();
+        em.clear();
+
+        assertThatThrownBy(() -> {
+            for (Long id : ids) {
+                em.find(Member.class, id);
+            }
+        }).matches(e -> e instanceof SqlBudgetExceededException
+                || NestedExceptionUtils.getMostSpecificCause(e) instanceof SqlBudgetExceededException);
+    }
+}
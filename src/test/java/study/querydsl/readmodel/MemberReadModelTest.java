@@ -0,0 +1,169 @@
+package study.querydsl.readmodel;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 읽기 모델은 커밋 이후 이벤트로 고쳐지므로 테스트 트랜잭션으로 감싸지 않고 직접 정리한다.
+// 쓰기 트랜잭션 안에서는 읽기 모델을 쓰지 않으므로, 같은 검색을 tx 안에서 돌린 결과가 JPA 경로의 결과다.
+// delta 합치기와 병렬 거르기가 모두 돌도록 기준값을 작게 둔다.
+@SpringBootTest(properties = {
+        "member.read-model.enabled=true",
+        "member.read-model.compact-threshold=3",
+        "member.read-model.parallel-threshold=1"
+})
+class MemberReadModelTest {
+
+    @Autowired
+    MemberReadModel memberReadModel;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 40; i++) {
+                Team team = i % 5 == 0 ? null : i % 2 == 0 ? teamA : teamB;
+                em.persist(new Member("member" + i, i % 25, team));
+            }
+        });
+        memberReadModel.reload();
+    }
+
+    @AfterEach
+    void tearDown() {
+        memberRepository.deleteAll();
+        teamRepository.deleteAll();
+    }
+
+    @Test
+    public void searchMatchesJpa() {
+        for (MemberSearchCondition condition : conditions()) {
+            assertThat(memberReadModel.search(condition)).isPresent();
+            assertSameAsJpa(condition);
+        }
+    }
+
+    @Test
+    public void pageMatchesJpa() {
+        for (MemberSearchCondition condition : conditions()) {
+            for (int page = 0; page < 4; page++) {
+                PageRequest pageable = PageRequest.of(page, 7);
+                Page<MemberTeamDto> readModel = memberRepository.searchPageSimple(condition, pageable);
+                Page<MemberTeamDto> jpa = tx.execute(status -> memberRepository.searchPageSimple(condition, pageable));
+
+                assertThat(readModel.getTotalElements()).isEqualTo(jpa.getTotalElements());
+                assertThat(readModel.getContent()).containsExactlyElementsOf(jpa.getContent());
+            }
+        }
+    }
+
+    @Test
+    public void followsMemberAndTeamChanges() {
+        Long teamCId = tx.execute(status -> {
+            Team teamC = new Team("teamC");
+            em.persist(teamC);
+            em.persist(new Member("newbie", 30, teamC));
+            em.persist(new Member("newbie2", 31));
+            return teamC.getId();
+        });
+        tx.executeWithoutResult(status -> {
+            List<Member> members = em.createQuery("select m from Member m where m.username in ('member1', 'member2', 'member3')", Member.class)
+                    .getResultList();
+            for (Member member : members) {
+                member.setAge(99);
+                member.changeTeam(em.find(Team.class, teamCId));
+            }
+            em.find(Team.class, teamCId).setName("teamZ");
+        });
+        tx.executeWithoutResult(status -> em.createQuery("select m from Member m where m.username = 'member4'", Member.class)
+                .getResultList()
+                .forEach(em::remove));
+
+        for (MemberSearchCondition condition : conditions()) {
+            assertSameAsJpa(condition);
+        }
+        MemberSearchCondition teamZ = condition(null, "teamZ", null, null);
+        assertThat(memberReadModel.search(teamZ).orElseThrow())
+                .extracting("username")
+                .containsExactlyInAnyOrder("newbie", "member1", "member2", "member3");
+        assertSameAsJpa(teamZ);
+        assertThat(memberReadModel.search(condition("member4", null, null, null)).orElseThrow()).isEmpty();
+    }
+
+    @Test
+    public void notUsedInsideReadWriteTransaction() {
+        tx.executeWithoutResult(status -> assertThat(memberReadModel.search(new MemberSearchCondition())).isEmpty());
+    }
+
+    private void assertSameAsJpa(MemberSearchCondition condition) {
+        List<MemberTeamDto> readModel = memberRepository.search(condition);
+        List<MemberTeamDto> jpa = tx.execute(status -> memberRepository.search(condition));
+        assertThat(readModel).as("%s", condition).containsExactlyElementsOf(jpa);
+    }
+
+    private List<MemberSearchCondition> conditions() {
+        List<MemberSearchCondition> conditions = new ArrayList<>();
+        conditions.add(new MemberSearchCondition());
+        conditions.add(condition("member7", null, null, null));
+        conditions.add(condition("nobody", null, null, null));
+        conditions.add(condition(null, "teamA", null, null));
+        conditions.add(condition(null, "teamB", 5, 15));
+        conditions.add(condition(null, "noTeam", null, null));
+        conditions.add(condition(null, null, 10, null));
+        conditions.add(condition(null, null, null, 3));
+        conditions.add(condition(null, null, 20, 10));
+        conditions.add(condition("member12", "teamA", 10, 20));
+        MemberSearchCondition contains = new MemberSearchCondition();
+        contains.setUsernameContains("er1");
+        conditions.add(contains);
+        MemberSearchCondition prefix = condition(null, "teamB", null, null);
+        prefix.setUsernamePrefix("member3");
+        conditions.add(prefix);
+        return conditions;
+    }
+
+    private MemberSearchCondition condition(String username, String teamName, Integer ageGoe, Integer ageLoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(ageGoe);
+        condition.setAgeLoe(ageLoe);
+        return condition;
+    }
+}
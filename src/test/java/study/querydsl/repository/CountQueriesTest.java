@@ -0,0 +1,60 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+class CountQueriesTest {
+
+    // JPQL 문자열만 확인하므로 EntityManager 없이 만든다.
+    JPAQueryFactory queryFactory = new JPAQueryFactory(JPQLTemplates.DEFAULT, (EntityManager) null);
+
+    @Test
+    public void dropsUnreferencedToOneJoin() {
+        String jpql = CountQueries.count(queryFactory, queryFactory.select(member)
+                        .from(member).leftJoin(member.team, team)
+                        .where(member.age.goe(10), member.team.id.eq(1L))
+                        .orderBy(member.username.asc())
+                        .offset(10).limit(5), member.id)
+                .toString();
+
+        assertThat(jpql).startsWith("select count(member.id)");
+        assertThat(jpql).doesNotContain("join", "order by");
+        assertThat(jpql).contains("member.age >= ?1", "member.team.id = ?2");
+    }
+
+    @Test
+    public void keepsJoinUsedByCondition() {
+        String jpql = CountQueries.count(queryFactory, queryFactory.select(member)
+                        .from(member).leftJoin(member.team, team).fetchJoin()
+                        .where(team.name.eq("teamA")), member.id)
+                .toString();
+
+        assertThat(jpql).contains("left join member.team as team");
+        assertThat(jpql).doesNotContain("fetch");
+    }
+
+    @Test
+    public void keepsCollectionAndInnerJoins() {
+        assertThat(CountQueries.count(queryFactory, queryFactory.select(team)
+                .from(team).leftJoin(team.members, member), team.id).toString())
+                .contains("left join team.members as member");
+        assertThat(CountQueries.count(queryFactory, queryFactory.select(member)
+                .from(member).join(member.team, team), member.id).toString())
+                .contains("inner join member.team as team");
+    }
+
+    @Test
+    public void rejectsGroupedQuery() {
+        assertThatThrownBy(() -> CountQueries.count(queryFactory, queryFactory.select(member.age)
+                .from(member).groupBy(member.age), member.id))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,90 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.BulkResult;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+// 청크마다 따로 커밋하므로 테스트 트랜잭션으로 감싸지 않고 직접 정리한다.
+@SpringBootTest(properties = "member.bulk.chunk-size=10")
+class MemberBulkRepositoryTest {
+
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        memberRepository.saveAll(IntStream.range(0, 25)
+                .mapToObj(i -> new Member("bulk" + i, i))
+                .collect(Collectors.toList()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void updateInChunks() {
+        BulkResult result = memberBulkRepository.update(member.age.lt(20),
+                update -> update.set(member.username, "비회원"));
+
+        assertThat(result.getRows()).isEqualTo(20);
+        assertThat(result.getChunks()).isEqualTo(2);
+        assertThat(memberRepository.findByUsername("비회원")).hasSize(20);
+    }
+
+    @Test
+    public void deleteInChunks() {
+        BulkResult result = memberBulkRepository.delete(member.age.gt(18));
+
+        assertThat(result.getRows()).isEqualTo(6);
+        assertThat(memberRepository.count()).isEqualTo(19);
+    }
+
+    @Test
+    public void evictsManagedEntities() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        readOnly.executeWithoutResult(status -> {
+            List<Member> loaded = memberRepository.findByUsername("bulk0");
+            memberBulkRepository.update(member.username.eq("bulk0"), update -> update.set(member.age, 99));
+
+            assertThat(em.contains(loaded.get(0))).isFalse();
+            assertThat(memberRepository.findByUsername("bulk0").get(0).getAge()).isEqualTo(99);
+        });
+    }
+
+    @Test
+    public void rejectsReadWriteTransaction() {
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        assertThatThrownBy(() -> readWrite.executeWithoutResult(
+                status -> memberBulkRepository.delete(member.age.gt(18))))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,115 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TotalAwarePage;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 히스토그램은 커밋된 데이터로만 모으므로 테스트 트랜잭션으로 감싸지 않고 직접 정리한다.
+// refresh=0s 라서 estimate 를 부를 때마다 뒤에서 다시 모으지만, 부른 쪽은 그때 있던 히스토그램을 쓴다.
+@SpringBootTest(properties = "member.count-estimate.refresh=0s")
+class MemberCountEstimatorTest {
+
+    @Autowired
+    MemberCountEstimator memberCountEstimator;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    Long teamAId;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        teamAId = tx.execute(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("member" + i, i * 10, i % 2 == 0 ? teamA : teamB));
+            }
+            return teamA.getId();
+        });
+        memberCountEstimator.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        memberRepository.deleteAll();
+        teamRepository.deleteAll();
+    }
+
+    @Test
+    public void searchPageEstimated() {
+        TotalAwarePage<MemberTeamDto> first = memberRepository.searchPageEstimated(teamA(), PageRequest.of(0, 2));
+        assertThat(first.getTotalAccuracy()).isEqualTo(TotalAwarePage.Accuracy.ESTIMATED);
+        assertThat(first.getTotalElements()).isEqualTo(5);
+
+        TotalAwarePage<MemberTeamDto> last = memberRepository.searchPageEstimated(teamA(), PageRequest.of(2, 2));
+        assertThat(last.getTotalAccuracy()).isEqualTo(TotalAwarePage.Accuracy.EXACT);
+        assertThat(last.getTotalElements()).isEqualTo(5);
+    }
+
+    @Test
+    public void expiredHistogramIsServedUntilRefreshed() {
+        addTeamAMembers();
+
+        assertThat(memberCountEstimator.estimate(teamA())).isEqualTo(5);
+
+        memberCountEstimator.refresh();
+        assertThat(memberCountEstimator.estimate(teamA())).isEqualTo(15);
+    }
+
+    @Test
+    public void writeTransactionUsesCommittedHistogram() {
+        Long estimated = tx.execute(status -> {
+            Team teamA = em.find(Team.class, teamAId);
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("uncommitted" + i, 1, teamA));
+            }
+            em.flush();
+            return memberCountEstimator.estimate(teamA());
+        });
+
+        assertThat(estimated).isEqualTo(5);
+    }
+
+    private void addTeamAMembers() {
+        tx.executeWithoutResult(status -> {
+            Team teamA = em.find(Team.class, teamAId);
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("more" + i, 1, teamA));
+            }
+        });
+    }
+
+    private MemberSearchCondition teamA() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        return condition;
+    }
+}
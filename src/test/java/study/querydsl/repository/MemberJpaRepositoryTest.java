@@ -13,6 +13,7 @@ import study.querydsl.entity.Team;
 import javax.persistence.EntityManager;
 
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -70,4 +71,20 @@ class MemberJpaRepositoryTest {
         Assertions.assertThat(result).extracting("username").containsExactly("member2");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void saveAllTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        long saved = memberJpaRepository.saveAll(IntStream.range(0, 250)
+                .mapToObj(i -> new Member("member" + i, i, teamA)));
+
+        assertThat(saved).isEqualTo(250);
+        assertThat(em.contains(teamA)).isFalse();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        assertThat(memberJpaRepository.search(condition)).hasSize(250);
+    }
+
+}
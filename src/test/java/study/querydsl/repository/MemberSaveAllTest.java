@@ -0,0 +1,80 @@
+package study.querydsl.repository;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.event.MemberChangedEvent;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 커밋 이후 이벤트와 커밋 전까지 남는 action 을 보므로 테스트 트랜잭션으로 감싸지 않고 직접 정리한다.
+@SpringBootTest(properties = "member.bulk.flush-size=50")
+@RecordApplicationEvents
+class MemberSaveAllTest {
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ApplicationEvents events;
+
+    @AfterEach
+    void tearDown() {
+        memberRepository.deleteAll();
+    }
+
+    @Test
+    public void saveAll_releasesInsertActionsAndPublishesOneBulkEvent() {
+        events.clear();
+
+        Boolean pending = new TransactionTemplate(transactionManager).execute(status -> {
+            memberJpaRepository.saveAll(IntStream.range(0, 1000)
+                    .mapToObj(i -> new Member("member" + i, i % 100)));
+            // flush 가 끝난 insert action 을 커밋까지 들고 있지 않는다.
+            return em.unwrap(SessionImplementor.class).getActionQueue().hasAfterTransactionActions();
+        });
+
+        assertThat(pending).isFalse();
+        List<MemberChangedEvent> published = events.stream(MemberChangedEvent.class).collect(Collectors.toList());
+        assertThat(published).extracting(MemberChangedEvent::getType).containsExactly(MemberChangedEvent.Type.BULK);
+        assertThat(memberRepository.count()).isEqualTo(1000);
+    }
+
+    @Test
+    public void persist_stillPublishesPerRowEvents() {
+        events.clear();
+
+        Boolean pending = new TransactionTemplate(transactionManager).execute(status -> {
+            em.persist(new Member("member1", 10));
+            em.persist(new Member("member2", 20));
+            em.flush();
+            return em.unwrap(SessionImplementor.class).getActionQueue().hasAfterTransactionActions();
+        });
+
+        assertThat(pending).isTrue();
+        assertThat(events.stream(MemberChangedEvent.class))
+                .extracting(MemberChangedEvent::getType)
+                .containsExactly(MemberChangedEvent.Type.INSERT, MemberChangedEvent.Type.INSERT);
+    }
+}
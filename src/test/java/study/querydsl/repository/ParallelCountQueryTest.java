@@ -0,0 +1,141 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.TotalAwarePage;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 쓰기 트랜잭션 안에서는 호출한 스레드에서 세므로, 전용 스레드를 타도록 테스트 트랜잭션으로 감싸지 않고 직접 정리한다.
+// 스레드 하나, 대기열 없음으로 두어 두 번째 제출은 거절되게 한다.
+@SpringBootTest(properties = {
+        "member.search.parallel-count.timeout=1s",
+        "member.search.parallel-count.pool-size=1",
+        "member.search.parallel-count.queue-capacity=0"
+})
+class ParallelCountQueryTest {
+
+    // 조건 때문에 건수를 미리 알 수 없어서 행을 끝까지 센다. 취소하지 않으면 한참 걸린다.
+    private static final String SLOW_COUNT =
+            "select count(*) from system_range(1, 100000000000) where mod(x, 7) = 3";
+
+    @Autowired
+    ParallelCountQuery parallelCountQuery;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamA));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        memberRepository.deleteAll();
+        teamRepository.deleteAll();
+    }
+
+    @Test
+    public void countOnWorkerThread() throws InterruptedException {
+        assertThat(runsOnWorker()).isTrue();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        double rejected = counter("rejected");
+
+        TotalAwarePage<MemberTeamDto> page = memberRepository.searchPageParallel(condition, PageRequest.of(0, 2));
+
+        assertThat(page.getContent()).extracting("username").containsExactly("member1", "member2");
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getTotalAccuracy()).isEqualTo(TotalAwarePage.Accuracy.EXACT);
+        assertThat(counter("rejected")).isEqualTo(rejected);
+    }
+
+    @Test
+    public void timeoutCancelsRunningStatement() throws Exception {
+        double timedOut = counter("timeout");
+        CompletableFuture<Throwable> finished = new CompletableFuture<>();
+
+        ParallelCountQuery.Task slow = parallelCountQuery.submit(() -> {
+            try {
+                return ((Number) em.createNativeQuery(SLOW_COUNT).getSingleResult()).longValue();
+            } catch (RuntimeException e) {
+                finished.complete(e);
+                throw e;
+            } finally {
+                finished.complete(null);
+            }
+        });
+
+        // 하나뿐인 스레드가 바쁘므로 거절되고, join 할 때 호출한 스레드에서 센다.
+        String[] thread = new String[1];
+        ParallelCountQuery.Task rejected = parallelCountQuery.submit(() -> {
+            thread[0] = Thread.currentThread().getName();
+            return 1;
+        });
+        assertThat(rejected.join()).hasValue(1);
+        assertThat(thread[0]).isEqualTo(Thread.currentThread().getName());
+
+        assertThat(slow.join()).isEmpty();
+        assertThat(counter("timeout")).isEqualTo(timedOut + 1);
+
+        // JDBC 문이 끊겨서 전용 스레드의 트랜잭션이 끝나고, 그 스레드가 다음 count 를 받는다.
+        assertThat(finished.get(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(runsOnWorker()).isTrue();
+    }
+
+    /**
+     * 트랜잭션을 정리하는 동안에는 거절될 수 있으므로 잠시 기다려 본다.
+     */
+    private boolean runsOnWorker() throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            String[] thread = new String[1];
+            parallelCountQuery.submit(() -> {
+                thread[0] = Thread.currentThread().getName();
+                return 0;
+            }).join();
+            if (thread[0].startsWith("count-query-")) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+
+    private double counter(String result) {
+        return registry.get("member.search.parallel.count").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,91 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.metrics.SqlStatementCounter;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class TeamRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    SqlStatementCounter sqlStatementCounter;
+
+    @BeforeEach
+    public void before() {
+        for (int i = 0; i < 5; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            for (int j = 0; j < 3; j++) {
+                em.persist(new Member("member" + i + "_" + j, j, team));
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void findAllWithMembers() {
+        SqlStatementCounter.Scope scope = sqlStatementCounter.begin("findAllWithMembers");
+        int members = 0;
+        try {
+            List<Team> teams = teamRepository.findAllWithMembers(PageRequest.of(0, 4));
+            assertThat(teams).extracting("name").containsExactly("team0", "team1", "team2", "team3");
+            for (Team team : teams) {
+                for (Member member : team.getMembers()) {
+                    members += member.getTeam().getName().length() > 0 ? 1 : 0;
+                }
+            }
+        } finally {
+            sqlStatementCounter.end(scope);
+        }
+
+        assertThat(members).isEqualTo(12);
+        assertThat(scope.getStatements()).isEqualTo(2);
+    }
+
+    @Test
+    public void batchFetchTeamMembers() {
+        SqlStatementCounter.Scope scope = sqlStatementCounter.begin("batchFetchTeamMembers");
+        try {
+            List<Team> teams = teamRepository.findAll();
+            assertThat(teams.stream().mapToInt(team -> team.getMembers().size()).sum()).isEqualTo(15);
+        } finally {
+            sqlStatementCounter.end(scope);
+        }
+
+        // 팀 목록 + 회원 컬렉션 한 번
+        assertThat(scope.getStatements()).isEqualTo(2);
+    }
+
+    @Test
+    public void batchFetchMemberTeam() {
+        SqlStatementCounter.Scope scope = sqlStatementCounter.begin("batchFetchMemberTeam");
+        try {
+            List<Member> members = em.createQuery("select m from Member m", Member.class).getResultList();
+            assertThat(members).extracting(member -> member.getTeam().getName()).hasSize(15);
+        } finally {
+            sqlStatementCounter.end(scope);
+        }
+
+        // 회원 목록 + 팀 프록시 한 번
+        assertThat(scope.getStatements()).isEqualTo(2);
+    }
+}
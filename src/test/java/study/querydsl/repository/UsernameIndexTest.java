@@ -0,0 +1,115 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 색인은 커밋 이후 이벤트로 고쳐지므로 테스트 트랜잭션으로 감싸지 않고 직접 정리한다.
+@SpringBootTest
+class UsernameIndexTest {
+
+    @Autowired
+    UsernameIndex usernameIndex;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            for (String username : List.of("alice", "alicia", "bob", "member_1", "memberX1")) {
+                em.persist(new Member(username, 10));
+            }
+        });
+        usernameIndex.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        memberRepository.deleteAll();
+    }
+
+    @Test
+    public void find() {
+        assertThat(usernames(usernameIndex.find("lic", null).orElseThrow())).containsExactlyInAnyOrder("alice", "alicia");
+        assertThat(usernames(usernameIndex.find(null, "ali").orElseThrow())).containsExactlyInAnyOrder("alice", "alicia");
+        assertThat(usernames(usernameIndex.find("cia", "ali").orElseThrow())).containsExactly("alicia");
+        assertThat(usernames(usernameIndex.find("b", null).orElseThrow())).containsExactlyInAnyOrder("bob", "member_1", "memberX1");
+        assertThat(usernameIndex.find("zzz", null).orElseThrow()).isEmpty();
+    }
+
+    @Test
+    public void followsMemberChanges() {
+        Long id = tx.execute(status -> {
+            Member member = new Member("alina", 20);
+            em.persist(member);
+            return member.getId();
+        });
+        assertThat(usernames(usernameIndex.find(null, "ali").orElseThrow())).contains("alina");
+
+        tx.executeWithoutResult(status -> em.find(Member.class, id).setUsername("carol"));
+        assertThat(usernames(usernameIndex.find(null, "ali").orElseThrow())).doesNotContain("alina");
+        assertThat(usernames(usernameIndex.find("aro", null).orElseThrow())).containsExactly("carol");
+
+        tx.executeWithoutResult(status -> em.remove(em.find(Member.class, id)));
+        assertThat(usernameIndex.find("aro", null).orElseThrow()).isEmpty();
+    }
+
+    @Test
+    public void searchMatchesSqlLike() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernameContains("r_1");
+
+        // 읽기 전용 트랜잭션은 색인을, 쓰기 트랜잭션 안에서는 like 를 쓴다.
+        List<MemberTeamDto> indexed = memberJpaRepository.search(condition);
+        List<MemberTeamDto> sql = tx.execute(status -> memberJpaRepository.search(condition));
+
+        assertThat(indexed).extracting("username").containsExactly("member_1");
+        assertThat(sql).extracting("username").containsExactly("member_1");
+    }
+
+    @Test
+    public void staleIndexOnlyNarrowsCandidates() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernamePrefix("ali");
+
+        // 이벤트 없이 이름을 바꿔서 색인이 늦은 상태를 만든다. 색인은 아직 alice 를 후보로 낸다.
+        tx.executeWithoutResult(status -> em.createNativeQuery("update member set username = 'zed' where username = 'alice'")
+                .executeUpdate());
+        assertThat(usernameIndex.find(null, "ali").orElseThrow()).hasSize(2);
+
+        assertThat(memberJpaRepository.search(condition)).extracting("username").containsExactly("alicia");
+    }
+
+    private Set<String> usernames(Set<Long> ids) {
+        return memberRepository.findAllById(ids).stream()
+                .map(Member::getUsername)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,83 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// StatelessSession 은 따로 커넥션을 열기 때문에 데이터를 커밋해 두고 직접 정리한다.
+@SpringBootTest
+class MemberExportServiceTest {
+
+    @Autowired
+    MemberExportService memberExportService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Team teamA = new Team("team,A");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        memberRepository.deleteAll();
+        teamRepository.deleteAll();
+    }
+
+    @Test
+    public void exportCsv() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MemberExportService.ExportResult result = memberExportService.export(out, MemberExportService.Format.CSV);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(result.getRows()).isEqualTo(2);
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).isEqualTo("member_id,username,age,team_id,team_name");
+        assertThat(lines[1]).startsWith(memberId("member1") + ",member1,10,").endsWith(",\"team,A\"");
+        assertThat(lines[2]).isEqualTo(memberId("member2") + ",member2,20,,");
+    }
+
+    @Test
+    public void exportNdjson() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MemberExportService.ExportResult result = memberExportService.export(out, MemberExportService.Format.NDJSON);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(result.getRows()).isEqualTo(2);
+        assertThat(lines[0]).startsWith("{").contains("\"username\":\"member1\"", "\"teamName\":\"team,A\"");
+        assertThat(lines[1]).startsWith("{").contains("\"teamId\":null");
+    }
+
+    private Long memberId(String username) {
+        return memberRepository.findByUsername(username).get(0).getId();
+    }
+}
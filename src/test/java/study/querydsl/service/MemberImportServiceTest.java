@@ -0,0 +1,160 @@
+package study.querydsl.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import study.querydsl.dto.ImportResult;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// 청크마다 따로 커밋하므로 직접 정리한다.
+// 팀을 다시 읽는지 보려고 하이버네이트 통계를 켜고, 청크를 여러 개로 나눈다.
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "member.import.chunk-size=2"
+})
+class MemberImportServiceTest {
+
+    @Autowired
+    MemberImportService memberImportService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    MemberEvents memberEvents;
+
+    @AfterEach
+    void tearDown() {
+        memberRepository.deleteAll();
+        teamRepository.deleteAll();
+    }
+
+    @Test
+    public void importCsv() throws Exception {
+        Team teamA = teamRepository.save(new Team("teamA"));
+
+        String csv = "username,age,team_name\n" +
+                "member1,10,teamA\n" +
+                "member2,twenty,teamA\n" +
+                "\n" +
+                "\"member,3\",30,teamB\n" +
+                ",40,teamB\n" +
+                "member5,50,\n";
+
+        ImportResult result = memberImportService.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(result.getImported()).isEqualTo(3);
+        assertThat(result.getFailed()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting("line").containsExactly(3L, 6L);
+
+        List<Member> members = memberRepository.findAll();
+        assertThat(members).extracting("username", "age")
+                .containsExactlyInAnyOrder(tuple("member1", 10), tuple("member,3", 30), tuple("member5", 50));
+        assertThat(teamRepository.findByName("teamA")).extracting("id").containsExactly(teamA.getId());
+        assertThat(teamRepository.findByName("teamB")).hasSize(1);
+    }
+
+    @Test
+    public void importCsv_columnsByHeaderName() throws Exception {
+        // 내보내기 형식 그대로. member_id, team_id 는 무시한다.
+        String csv = "member_id,username,age,team_id,team_name\n" +
+                "1,member1,10,1,teamA\n" +
+                "2,member2,20,,\n";
+
+        ImportResult result = memberImportService.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(memberRepository.findByUsername("member1")).hasSize(1);
+    }
+
+    @Test
+    public void importCsv_doesNotReadTeams() throws Exception {
+        teamRepository.save(new Team("teamA"));
+        StringBuilder csv = new StringBuilder("username,age,team_name\n");
+        for (int i = 0; i < 10; i++) {
+            csv.append("member").append(i).append(',').append(i).append(',').append(i % 2 == 0 ? "teamA" : "teamB").append('\n');
+        }
+        EntityStatistics teams = entityManagerFactory.unwrap(SessionFactory.class).getStatistics()
+                .getEntityStatistics(Team.class.getName());
+        long fetchesBefore = teams.getFetchCount();
+
+        ImportResult result = memberImportService.importCsv(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(result.getImported()).isEqualTo(10);
+        // getReference 로 건 팀 프록시가 초기화되면 청크마다 팀을 select 한다.
+        assertThat(teams.getFetchCount() - fetchesBefore).isZero();
+    }
+
+    @Test
+    public void importCsv_publishesOneBulkEvent() throws Exception {
+        StringBuilder csv = new StringBuilder("username,age\n");
+        for (int i = 0; i < 10; i++) {
+            csv.append("member").append(i).append(',').append(i).append('\n');
+        }
+        memberEvents.clear();
+
+        memberImportService.importCsv(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+
+        // 청크는 다섯 개지만 색인과 통계를 다시 만드는 BULK 는 끝날 때 한 번만 나간다.
+        assertThat(memberEvents.published)
+                .extracting(MemberChangedEvent::getType)
+                .containsExactly(MemberChangedEvent.Type.BULK);
+    }
+
+    @Test
+    public void parseLine() {
+        assertThat(MemberImportService.parseLine("a,\"b,c\",\"d\"\"e\",")).containsExactly("a", "b,c", "d\"e", "");
+    }
+
+    @TestConfiguration
+    static class MemberEventsConfig {
+
+        @Bean
+        MemberEvents memberEvents() {
+            return new MemberEvents();
+        }
+    }
+
+    /**
+     * 저장 단계 스레드에서 발행된 이벤트도 모은다. (@RecordApplicationEvents 는 테스트 스레드의 것만 모은다)
+     */
+    static class MemberEvents {
+
+        final List<MemberChangedEvent> published = new CopyOnWriteArrayList<>();
+
+        void clear() {
+            published.clear();
+        }
+
+        @EventListener
+        public void onMemberChanged(MemberChangedEvent event) {
+            published.add(event);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import study.querydsl.dto.MemberCursor;
+import study.querydsl.dto.MemberCursorPage;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberCountEstimator;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+// 건수 어림은 커밋된 데이터로만 모으므로 테스트 트랜잭션으로 감싸지 않고 직접 정리한다.
+// 스캔 허가를 0 개로 두어 전체 스캔은 언제나 밀려나게 한다. 인덱스 검색은 허가 없이 돈다.
+@SpringBootTest(properties = {
+        "member.predicate-search.max-rows=10",
+        "member.predicate-search.max-examined-rows=50",
+        "member.predicate-search.max-concurrent-scans=0",
+        "member.predicate-search.acquire-timeout=10ms"
+})
+class MemberPredicateSearchServiceTest {
+
+    @Autowired
+    MemberPredicateSearchService memberPredicateSearchService;
+
+    @Autowired
+    MemberCountEstimator memberCountEstimator;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 40; i++) {
+                em.persist(new Member("member" + i, i, i % 2 == 0 ? teamA : teamB));
+            }
+        });
+        memberCountEstimator.refresh();
+    }
+
+    @AfterEach
+    void tearDown() {
+        memberRepository.deleteAll();
+        teamRepository.deleteAll();
+    }
+
+    @Test
+    public void toCondition() {
+        MemberSearchCondition condition = MemberPredicateSearchService.toCondition(
+                member.username.eq("member1").and(member.team.name.eq("teamB")).and(member.age.between(10, 20)));
+
+        assertThat(condition.getUsername()).isEqualTo("member1");
+        assertThat(condition.getTeamName()).isEqualTo("teamB");
+        assertThat(condition.getAgeGoe()).isEqualTo(10);
+        assertThat(condition.getAgeLoe()).isEqualTo(20);
+
+        assertThat(MemberPredicateSearchService.toCondition(member.username.startsWith("member"))).isNull();
+    }
+
+    @Test
+    public void estimate() {
+        assertThat(memberPredicateSearchService.estimate(member.team.name.eq("teamA")))
+                .extracting("access", "examinedRows")
+                .containsExactly(MemberPredicateSearchService.Access.INDEX, 20L);
+        // age 만으로는 인덱스를 쓸 수 없어서 전체를 읽는다.
+        assertThat(memberPredicateSearchService.estimate(member.age.eq(10)))
+                .extracting("access", "estimatedRows", "examinedRows")
+                .containsExactly(MemberPredicateSearchService.Access.SCAN, 1L, 40L);
+    }
+
+    @Test
+    public void search_cappedWithCursor() {
+        MemberCursorPage first = memberPredicateSearchService.search(member.team.name.eq("teamA"), null, 100);
+
+        assertThat(first.getContent()).hasSize(10);
+        assertThat(first.isHasNext()).isTrue();
+
+        MemberCursorPage second = memberPredicateSearchService.search(member.team.name.eq("teamA"),
+                MemberCursor.decode(first.getNextCursor()), 100);
+        assertThat(second.getContent()).hasSize(10);
+        assertThat(second.getContent().get(0).getAge()).isEqualTo(20);
+        assertThat(second.isHasNext()).isFalse();
+    }
+
+    @Test
+    public void search_rejectsExpensiveScan() {
+        tx.executeWithoutResult(status -> {
+            for (int i = 40; i < 60; i++) {
+                em.persist(new Member("member" + i, i));
+            }
+        });
+        memberCountEstimator.refresh();
+
+        assertThatThrownBy(() -> memberPredicateSearchService.search(member.age.goe(0), null, 10))
+                .isInstanceOf(MemberPredicateSearchService.QueryTooExpensiveException.class);
+        assertThat(memberPredicateSearchService.search(member.username.eq("member50"), null, 10).getContent())
+                .hasSize(1);
+    }
+
+    @Test
+    public void search_throttlesScanWithoutPermit() {
+        assertThatThrownBy(() -> memberPredicateSearchService.search(member.age.eq(10), null, 10))
+                .isInstanceOf(MemberPredicateSearchService.TooManyScansException.class);
+        assertThat(AnnotationUtils.findAnnotation(MemberPredicateSearchService.TooManyScansException.class,
+                ResponseStatus.class).value()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    }
+}
@@ -0,0 +1,57 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberStreamServiceTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberStreamService memberStreamService;
+
+    @Test
+    public void writeNdjson() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = memberStreamService.write(condition, out, MemberStreamService.Format.NDJSON);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(rows).isEqualTo(2);
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("{").contains("\"username\":\"member1\"");
+        assertThat(lines[1]).startsWith("{").contains("\"username\":\"member2\"");
+    }
+
+    @Test
+    public void writeJsonArray() throws Exception {
+        em.persist(new Member("member1", 10));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        memberStreamService.write(new MemberSearchCondition(), out, MemberStreamService.Format.JSON_ARRAY);
+
+        String json = out.toString(StandardCharsets.UTF_8);
+        assertThat(json).startsWith("[").endsWith("]").contains("\"username\":\"member1\"");
+    }
+}
@@ -0,0 +1,181 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// 통계는 커밋 이후 이벤트로 고쳐지므로 테스트 트랜잭션으로 감싸지 않고 직접 정리한다.
+@SpringBootTest
+class TeamStatsServiceTest {
+
+    @Autowired
+    TeamStatsService teamStatsService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    EventGate eventGate;
+
+    TransactionTemplate tx;
+    Long member2Id;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("member1", 10, teamA));
+            Member member2 = new Member("member2", 20, teamA);
+            em.persist(member2);
+            em.persist(new Member("member3", 30, teamB));
+            member2Id = member2.getId();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventGate.open();
+        memberRepository.deleteAll();
+        teamRepository.deleteAll();
+    }
+
+    @Test
+    public void statsFollowMemberChanges() {
+        assertThat(teamStatsService.findAll())
+                .extracting(TeamStatsDto::getTeamName, TeamStatsDto::getMemberCount, TeamStatsDto::getAvgAge,
+                        TeamStatsDto::getMinAge, TeamStatsDto::getMaxAge)
+                .containsExactly(
+                        tuple("teamA", 2L, 15.0, 10, 20),
+                        tuple("teamB", 1L, 30.0, 30, 30));
+
+        // member2 를 teamB 로 옮기고 teamA 에 한 명 더 넣는다.
+        tx.executeWithoutResult(status -> {
+            Member member2 = em.find(Member.class, member2Id);
+            Team teamA = member2.getTeam();
+            Team teamB = teamRepository.findByName("teamB").get(0);
+            member2.changeTeam(teamB);
+            em.persist(new Member("member4", 40, teamA));
+        });
+
+        List<TeamStatsDto> stats = teamStatsService.findAll();
+        assertThat(stats)
+                .extracting(TeamStatsDto::getTeamName, TeamStatsDto::getMemberCount, TeamStatsDto::getAvgAge,
+                        TeamStatsDto::getMinAge, TeamStatsDto::getMaxAge)
+                .containsExactly(
+                        tuple("teamA", 2L, 25.0, 10, 40),
+                        tuple("teamB", 2L, 25.0, 20, 30));
+    }
+
+    @Test
+    public void rebuildAfterBulkUpdate() {
+        teamStatsService.findAll();
+
+        memberRepository.bulkAgePlus(0);
+
+        assertThat(teamStatsService.findAll())
+                .extracting(TeamStatsDto::getTeamName, TeamStatsDto::getMinAge, TeamStatsDto::getMaxAge)
+                .containsExactly(
+                        tuple("teamA", 11, 21),
+                        tuple("teamB", 31, 31));
+    }
+
+    @Test
+    public void eventCommittedBeforeRebuildIsNotCountedTwice() throws Exception {
+        memberRepository.bulkAgePlus(0);
+
+        // 커밋은 끝났지만 통계에 이벤트가 닿기 전에 세운다.
+        eventGate.close();
+        CompletableFuture<Void> insert = CompletableFuture.runAsync(() -> tx.executeWithoutResult(status ->
+                em.persist(new Member("member4", 40, teamRepository.findByName("teamA").get(0)))));
+        assertThat(eventGate.awaitHeld()).isTrue();
+
+        // 다시 만들면서 member4 를 읽는다.
+        assertThat(teamStatsService.findAll())
+                .extracting(TeamStatsDto::getTeamName, TeamStatsDto::getMemberCount)
+                .containsExactly(tuple("teamA", 3L), tuple("teamB", 1L));
+
+        // 그 뒤에 도착한 member4 의 이벤트를 한 번 더 더하지 않는다.
+        eventGate.open();
+        insert.get(5, TimeUnit.SECONDS);
+        assertThat(teamStatsService.findAll())
+                .extracting(TeamStatsDto::getTeamName, TeamStatsDto::getMemberCount, TeamStatsDto::getMaxAge)
+                .containsExactly(tuple("teamA", 3L, 40), tuple("teamB", 1L, 31));
+    }
+
+    @TestConfiguration
+    static class EventGateConfig {
+
+        @Bean
+        EventGate eventGate() {
+            return new EventGate();
+        }
+    }
+
+    /**
+     * 닫혀 있으면 회원 추가 이벤트를 다른 리스너보다 먼저 받아서, 열릴 때까지 커밋한 스레드를 붙잡는다.
+     */
+    static class EventGate {
+
+        private volatile CountDownLatch held = new CountDownLatch(1);
+        private volatile CountDownLatch opened = new CountDownLatch(0);
+
+        void close() {
+            held = new CountDownLatch(1);
+            opened = new CountDownLatch(1);
+        }
+
+        void open() {
+            opened.countDown();
+        }
+
+        boolean awaitHeld() throws InterruptedException {
+            return held.await(5, TimeUnit.SECONDS);
+        }
+
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        @EventListener
+        public void onMemberChanged(MemberChangedEvent event) throws InterruptedException {
+            if (event.getType() == MemberChangedEvent.Type.INSERT && opened.getCount() > 0) {
+                held.countDown();
+                opened.await(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+}